@@ -0,0 +1,37 @@
+package net.trajano.temporal.benchmark;
+
+import net.trajano.temporal.TemporalDataPatternApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Common setup for the benchmarks.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+
+    }
+
+    /**
+     * Starts the application against its own embedded HSQLDB database.
+     *
+     * @param webApplicationType web application type
+     * @param properties additional properties
+     * @return application context
+     */
+    static ConfigurableApplicationContext start(
+      final WebApplicationType webApplicationType,
+      final String... properties) {
+
+        return new SpringApplicationBuilder(TemporalDataPatternApplication.class)
+          .web(webApplicationType)
+          .properties(
+            "spring.datasource.generate-unique-name=true",
+            "logging.level.root=WARN")
+          .properties(properties)
+          .run();
+    }
+
+}
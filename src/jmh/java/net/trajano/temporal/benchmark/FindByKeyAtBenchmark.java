@@ -0,0 +1,127 @@
+package net.trajano.temporal.benchmark;
+
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NoResultException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code findByKeyAt} for a key with a varying number of versions.  {@link #findByKeyAtCriteria()} is the
+ * baseline, the lookup as it was before the queries were built once per entity class, with a criteria query that is
+ * built on every call and a subquery for the latest effective on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(
+  iterations = 3,
+  time = 2
+)
+@Measurement(
+  iterations = 5,
+  time = 2
+)
+public class FindByKeyAtBenchmark {
+
+    private static final LocalDate FIRST = LocalDate.of(2000, 1, 1);
+
+    private static final String KEY = "benchmark";
+
+    private static final UUID NOT_SUPERSEDED = UUID.fromString("00000000-0000-0000-0000-000000000000");
+
+    private ConfigurableApplicationContext context;
+
+    private EntityManager em;
+
+    private SampleTemporalEntityRepository repository;
+
+    /**
+     * Runs the criteria lookup in a read only transaction, as the repository lookups are.
+     */
+    private TransactionTemplate transactionTemplate;
+
+    @Param({
+      "1",
+      "100",
+      "10000"
+    })
+    private int versionsPerKey;
+
+    @Setup
+    public void setup() {
+        context = Benchmarks.start(WebApplicationType.NONE);
+        repository = context.getBean(SampleTemporalEntityRepository.class);
+        em = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+        final List<SampleTemporalEntity> versions = new ArrayList<>(versionsPerKey);
+        for (int i = 0; i < versionsPerKey; ++i) {
+            final SampleTemporalEntity o = new SampleTemporalEntity();
+            o.setKey(KEY);
+            o.setEffectiveOn(FIRST.plusDays(i));
+            o.setProperty("version " + i);
+            versions.add(o);
+        }
+        repository.saveAllTemporal(versions);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<SampleTemporalEntity> findByKeyAt() {
+        return repository.findByKeyAt(KEY, FIRST.plusDays(ThreadLocalRandom.current().nextInt(versionsPerKey)));
+    }
+
+    @Benchmark
+    public Optional<SampleTemporalEntity> findByKeyAtCriteria() {
+        final LocalDate at = FIRST.plusDays(ThreadLocalRandom.current().nextInt(versionsPerKey));
+        return transactionTemplate.execute(status -> {
+            final CriteriaBuilder cb = em.getCriteriaBuilder();
+            final CriteriaQuery<SampleTemporalEntity> cq = cb.createQuery(SampleTemporalEntity.class);
+            final Root<SampleTemporalEntity> entityRoot = cq.from(SampleTemporalEntity.class);
+
+            final Subquery<LocalDate> effectiveOnQuery = cq.subquery(LocalDate.class);
+            final Root<SampleTemporalEntity> effectiveOnRoot = effectiveOnQuery.from(SampleTemporalEntity.class);
+            effectiveOnQuery.select(cb.greatest(effectiveOnRoot.<LocalDate>get("effectiveOn")))
+              .where(
+                cb.equal(effectiveOnRoot.get("key"), KEY),
+                cb.equal(effectiveOnRoot.get("supersededBy"), NOT_SUPERSEDED),
+                cb.lessThanOrEqualTo(effectiveOnRoot.get("effectiveOn"), at));
+
+            try {
+                return Optional.of(em.createQuery(cq.select(entityRoot)
+                  .where(
+                    cb.equal(entityRoot.get("key"), KEY),
+                    cb.equal(entityRoot.get("supersededBy"), NOT_SUPERSEDED),
+                    cb.equal(entityRoot.get("effectiveOn"), effectiveOnQuery)))
+                  .getSingleResult());
+            } catch (final NoResultException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,67 @@
+package net.trajano.temporal.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import net.trajano.temporal.anemic.AnemicTemporal;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the JSON serialization and deserialization of {@link AnemicTemporal} with a varying number of additional
+ * attributes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(
+  iterations = 3,
+  time = 2
+)
+@Measurement(
+  iterations = 5,
+  time = 2
+)
+public class JacksonBenchmark {
+
+    @Param({
+      "10",
+      "1000"
+    })
+    private int attributes;
+
+    private AnemicTemporal entity;
+
+    private String json;
+
+    private ObjectMapper mapper;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = Jackson2ObjectMapperBuilder.json()
+          .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+          .build();
+        entity = new AnemicTemporal();
+        entity.setKey("jackson");
+        entity.setEffectiveOn(Instant.now());
+        for (int i = 0; i < attributes; ++i) {
+            entity.setAdditionalAttribute("attribute" + i, "value of attribute " + i);
+        }
+        json = mapper.writeValueAsString(entity);
+    }
+
+    @Benchmark
+    public AnemicTemporal deserialize() throws IOException {
+        return mapper.readValue(json, AnemicTemporal.class);
+    }
+
+    @Benchmark
+    public String serialize() throws IOException {
+        return mapper.writeValueAsString(entity);
+    }
+
+}
@@ -0,0 +1,88 @@
+package net.trajano.temporal.benchmark;
+
+import net.trajano.temporal.domain.TemporalIdGenerator;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures {@code saveTemporal} for new keys and for saves that supersede an existing version using each of the ID
+ * generation strategies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(
+  iterations = 3,
+  time = 2
+)
+@Measurement(
+  iterations = 5,
+  time = 2
+)
+public class SaveTemporalBenchmark {
+
+    private static final LocalDate EFFECTIVE_ON = LocalDate.of(2000, 1, 1);
+
+    /**
+     * Number of keys that are superseded in rotation.
+     */
+    private static final int SUPERSEDED_KEYS = 1000;
+
+    private ConfigurableApplicationContext context;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    @Param({
+      TemporalIdGenerator.TIME_ORDERED,
+      TemporalIdGenerator.RANDOM
+    })
+    private String idGenerator;
+
+    private SampleTemporalEntityRepository repository;
+
+    @Setup
+    public void setup() {
+        context = Benchmarks.start(
+          WebApplicationType.NONE,
+          "spring.jpa.properties." + TemporalIdGenerator.STRATEGY_SETTING + "=" + idGenerator);
+        repository = context.getBean(SampleTemporalEntityRepository.class);
+        final List<SampleTemporalEntity> existing = new ArrayList<>(SUPERSEDED_KEYS);
+        for (int i = 0; i < SUPERSEDED_KEYS; ++i) {
+            final SampleTemporalEntity o = new SampleTemporalEntity();
+            o.setKey("supersede-" + i);
+            o.setEffectiveOn(EFFECTIVE_ON);
+            existing.add(o);
+        }
+        repository.saveAllTemporal(existing);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SampleTemporalEntity saveNewKey() {
+        final SampleTemporalEntity o = new SampleTemporalEntity();
+        o.setProperty("new");
+        return repository.saveTemporal(o, "new-" + counter.incrementAndGet(), EFFECTIVE_ON);
+    }
+
+    @Benchmark
+    public SampleTemporalEntity saveSuperseding() {
+        final SampleTemporalEntity o = new SampleTemporalEntity();
+        o.setProperty("superseding");
+        return repository.saveTemporal(o, "supersede-" + counter.incrementAndGet() % SUPERSEDED_KEYS, EFFECTIVE_ON);
+    }
+
+}
@@ -0,0 +1,104 @@
+package net.trajano.temporal.benchmark;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures end to end HTTP calls to the controllers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(
+  iterations = 3,
+  time = 2
+)
+@Measurement(
+  iterations = 5,
+  time = 2
+)
+public class WebBenchmark {
+
+    private static final String KEY = "web";
+
+    private WebClient client;
+
+    private ConfigurableApplicationContext context;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        context = Benchmarks.start(WebApplicationType.REACTIVE, "server.port=0");
+        client = context.getBean(WebClient.Builder.class)
+          .baseUrl("http://localhost:" + context.getEnvironment().getProperty("local.server.port"))
+          .build();
+
+        final SampleTemporalEntity sample = new SampleTemporalEntity();
+        sample.setProperty("web");
+        context.getBean(SampleTemporalEntityRepository.class).saveTemporal(sample, KEY, LocalDate.now());
+        final AnemicTemporal anemic = new AnemicTemporal();
+        anemic.setAdditionalAttribute("web", "web");
+        context.getBean(AnemicTemporalRepository.class).saveTemporal(anemic, KEY, Instant.now());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AnemicTemporal getAnemic() {
+        return client.get()
+          .uri("/anemic/{key}", KEY)
+          .retrieve()
+          .bodyToMono(AnemicTemporal.class)
+          .block();
+    }
+
+    @Benchmark
+    public SampleTemporalEntity getSample() {
+        return client.get()
+          .uri("/sample/{key}", KEY)
+          .retrieve()
+          .bodyToMono(SampleTemporalEntity.class)
+          .block();
+    }
+
+    @Benchmark
+    public AnemicTemporal postAnemic() {
+        final AnemicTemporal anemic = new AnemicTemporal();
+        anemic.setAdditionalAttribute("web", "web");
+        return client.post()
+          .uri("/anemic/{key}", "post-" + counter.incrementAndGet())
+          .syncBody(anemic)
+          .retrieve()
+          .bodyToMono(AnemicTemporal.class)
+          .block();
+    }
+
+    @Benchmark
+    public SampleTemporalEntity postSample() {
+        final SampleTemporalEntity sample = new SampleTemporalEntity();
+        sample.setProperty("web");
+        return client.post()
+          .uri("/sample/{key}", "post-" + counter.incrementAndGet())
+          .syncBody(sample)
+          .retrieve()
+          .bodyToMono(SampleTemporalEntity.class)
+          .block();
+    }
+
+}
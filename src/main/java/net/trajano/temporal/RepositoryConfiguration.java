@@ -0,0 +1,73 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.anemic.InMemoryAnemicTemporalRepository;
+import net.trajano.temporal.domain.TemporalSegmentStorage;
+import net.trajano.temporal.sample.InMemorySampleTemporalEntityRepository;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.jpa.repository.support.EntityManagerBeanDefinitionRegistrarPostProcessor;
+
+/**
+ * Chooses how the repositories are implemented.  They use JPA unless the {@code memory} profile is active, in which
+ * case they keep the versions in memory and the data source and JPA are not configured, see
+ * {@code application-memory.yml}.  The {@code segment} profile includes the {@code memory} profile and stores the
+ * versions in segment files.  This is imported by {@link TemporalDataPatternApplication} rather than scanned so it
+ * also applies to test slices.
+ */
+@Configuration
+public class RepositoryConfiguration {
+
+    @Configuration
+    @Profile("!memory")
+    @EnableJpaRepositories(basePackageClasses = TemporalDataPatternApplication.class)
+    static class Jpa {
+
+    }
+
+    /**
+     * The validator is imported as the repositories need it and the JPA test slices do not configure it.
+     */
+    @Configuration
+    @Profile("memory")
+    @ImportAutoConfiguration(ValidationAutoConfiguration.class)
+    static class InMemory {
+
+        /**
+         * Registers the shared {@link javax.persistence.EntityManager} if JPA is configured, as the JPA repositories
+         * would.  This does nothing when the data source and JPA are excluded.
+         */
+        @Bean
+        public static EntityManagerBeanDefinitionRegistrarPostProcessor entityManagerBeanDefinitionRegistrarPostProcessor() {
+            return new EntityManagerBeanDefinitionRegistrarPostProcessor();
+        }
+
+        @Bean
+        public AnemicTemporalRepository anemicTemporalRepository() {
+            return new InMemoryAnemicTemporalRepository();
+        }
+
+        @Bean
+        public SampleTemporalEntityRepository sampleTemporalEntityRepository() {
+            return new InMemorySampleTemporalEntityRepository();
+        }
+
+    }
+
+    @Configuration
+    @Profile("segment")
+    static class Segment {
+
+        @Bean
+        public TemporalSegmentStorage temporalSegmentStorage() {
+            return new TemporalSegmentStorage();
+        }
+
+    }
+
+}
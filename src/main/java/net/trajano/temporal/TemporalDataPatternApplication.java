@@ -2,10 +2,10 @@ package net.trajano.temporal;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
-@EnableJpaRepositories
+@Import(RepositoryConfiguration.class)
 public class TemporalDataPatternApplication {
 
     public static void main(String[] args) {
@@ -4,17 +4,18 @@ import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import net.trajano.temporal.domain.JsonAttributesConverter;
 import net.trajano.temporal.domain.TemporalEntity;
 
 import javax.persistence.*;
 import java.time.Instant;
-import java.time.ZonedDateTime;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * This is a sample temporal entity with just an {@link ElementCollection} that uses {@link ZonedDateTime} as the
- * effectiveFrom. {@link Table#uniqueConstraints()} need to be specified here as it cannot be inherited from {@link
+ * This is a sample temporal entity with just a map of additional attributes that uses {@link Instant} as the
+ * effectiveFrom.  The attributes are stored as JSON using {@link JsonAttributesConverter} rather than an {@link
+ * ElementCollection}. {@link Table#uniqueConstraints()} need to be specified here as it cannot be inherited from {@link
  * MappedSuperclass}.  If {@link Data} is used, then {@link EqualsAndHashCode#callSuper()} should be set to {@code
  * true}.
  */
@@ -30,13 +31,22 @@ import java.util.concurrent.ConcurrentHashMap;
         "supersededBy"
       }
     )
+  },
+  indexes = {
+    @Index(
+      columnList = "recordedAt, id"
+    )
   }
 )
 public class AnemicTemporal extends TemporalEntity<String, Instant> {
 
-    @ElementCollection(
-      fetch = FetchType.EAGER
+    /**
+     * Additional attributes stored as JSON in a single column so the entity is loaded with a single select.
+     */
+    @Convert(
+      converter = JsonAttributesConverter.class
     )
+    @Lob
     private Map<String, String> additionalAttributes = new ConcurrentHashMap<>();
 
     /**
@@ -1,10 +1,15 @@
 package net.trajano.temporal.anemic;
 
+import net.trajano.temporal.domain.TemporalProjection;
 import net.trajano.temporal.domain.TemporalRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface AnemicTemporalRepository
@@ -12,11 +17,47 @@ public interface AnemicTemporalRepository
   TemporalRepository<String, Instant, AnemicTemporal> {
 
     default Optional<AnemicTemporal> findByKey(String key) {
-        return findByKeyAt(key, Instant.now(), AnemicTemporal.class);
+        return findCurrentByKey(key, AnemicTemporal.class);
     }
 
     default Optional<AnemicTemporal> findByKeyAt(String key, Instant at) {
         return findByKeyAt(key, at, AnemicTemporal.class);
     }
 
+    default Map<String, AnemicTemporal> findByKeys(Collection<String> keys) {
+        return findByKeysAt(keys, Instant.now(), AnemicTemporal.class);
+    }
+
+    default Map<String, AnemicTemporal> findByKeysAt(Collection<String> keys, Instant at) {
+        return findByKeysAt(keys, at, AnemicTemporal.class);
+    }
+
+    default Optional<String> findVersionTagAt(String key, Instant at) {
+        return findVersionTagAt(key, at, AnemicTemporal.class);
+    }
+
+    default Optional<TemporalProjection> findFieldsByKeyAt(String key, Instant at, Collection<String> fields) {
+        return findFieldsByKeyAt(key, at, fields, AnemicTemporal.class);
+    }
+
+    default Stream<AnemicTemporal> findHistory(String key, Instant from, Instant to, boolean includeSuperseded) {
+        return findHistory(key, from, to, includeSuperseded, AnemicTemporal.class);
+    }
+
+    default long archiveSuperseded() {
+        return archiveSuperseded(AnemicTemporal.class);
+    }
+
+    default long rollForwardCurrentView() {
+        return rollForwardCurrentView(AnemicTemporal.class);
+    }
+
+    default Stream<AnemicTemporal> findChanged(Instant since, UUID afterId, int limit) {
+        return findChanged(since, afterId, limit, AnemicTemporal.class);
+    }
+
+    default Stream<AnemicTemporal> findSnapshotAt(Instant at) {
+        return findSnapshotAt(at, AnemicTemporal.class);
+    }
+
 }
@@ -0,0 +1,18 @@
+package net.trajano.temporal.anemic;
+
+import net.trajano.temporal.domain.InMemoryTemporalRepository;
+
+import java.time.Instant;
+
+/**
+ * {@link AnemicTemporalRepository} that keeps the versions in memory, this is used with the {@code memory} profile.
+ */
+public class InMemoryAnemicTemporalRepository extends
+  InMemoryTemporalRepository<String, Instant, AnemicTemporal> implements
+  AnemicTemporalRepository {
+
+    public InMemoryAnemicTemporalRepository() {
+        super(AnemicTemporal.class, Instant::now);
+    }
+
+}
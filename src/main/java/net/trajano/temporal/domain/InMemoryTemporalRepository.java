@@ -0,0 +1,1054 @@
+package net.trajano.temporal.domain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ReflectionUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.time.temporal.Temporal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static net.trajano.temporal.domain.TemporalMetrics.record;
+import static net.trajano.temporal.domain.TemporalRepositoryImpl.NOT_SUPERSEDED;
+
+/**
+ * A temporal repository that keeps the versions in memory rather than in a database, for edge nodes and tests that do
+ * not need JPA.  Each key has a timeline of the versions that are not superseded in a {@link ConcurrentSkipListMap}
+ * ordered by effective on, so an as-of lookup is a hash lookup of the key and a floor lookup in its timeline without
+ * any locking.  Saves have the same supersede semantics as {@link TemporalRepositoryImpl}.
+ * <p>
+ * Versions are copied when they are saved and when they are returned, and a version that is superseded or has its
+ * effective until changed is replaced by a modified copy, so neither the caller nor the repository can change a
+ * version the other holds.
+ * <p>
+ * Saves of the same key are serialized with a lock per key.  If there is a transaction the lock is held until it
+ * completes, and the versions it saves are only seen by its own lookups by key and by id until it commits, when they
+ * are published to the timelines before the locks are released.  Nothing needs to be undone if it rolls back.
+ * <p>
+ * If there is a {@link TemporalSegmentStorage} the versions are appended to its segment files when they are committed
+ * and are replayed from them when the repository starts, otherwise nothing is persisted.  Effective until is always
+ * maintained and there is no current view, so there is nothing to back fill or roll forward.
+ *
+ * @param <S> type for the key, it is comparable so the keys of a write are always locked in the same order
+ * @param <T> type for the effectiveOn
+ * @param <O> temporal entity type
+ */
+@Slf4j
+public abstract class InMemoryTemporalRepository<
+  S extends Serializable & Comparable<? super S>,
+  T extends Temporal & Comparable<? super T>,
+  O extends TemporalEntity<S, T>
+  >
+  implements TemporalRepository<S, T, O> {
+
+    /**
+     * Lowest UUID, this is used for a cursor that includes all the versions recorded at a time.
+     */
+    private static final UUID MIN_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    /**
+     * Versions by recorded at and id.
+     */
+    private final ConcurrentSkipListMap<Cursor, O> changes = new ConcurrentSkipListMap<>();
+
+    /**
+     * Versions recorded within this many milliseconds are not returned by {@link #findChanged(Instant, UUID, int,
+     * Class)} as transactions that started earlier may still be rolled back.
+     */
+    @Value("${temporal.changed.settle-millis:5000}")
+    private long changedSettleMillis;
+
+    /**
+     * Change feed, the saved versions are not published if there is none.
+     */
+    @Autowired(required = false)
+    private TemporalChangeFeed changeFeed;
+
+    /**
+     * Gets the current time.
+     */
+    private final Supplier<T> clock;
+
+    /**
+     * Copies the versions that are saved, superseded, ended or returned.
+     */
+    private final TemporalEntityCopier<O> copier;
+
+    /**
+     * Map attribute whose entries can be selected in a projection, {@code null} if there is none.
+     */
+    private final Field entriesField;
+
+    private final Class<O> entityClass;
+
+    /**
+     * Fields that can be selected in a projection by name.
+     */
+    private final Map<String, Field> attributeFields = new HashMap<>();
+
+    /**
+     * Meter registry, if there is none then the global registry is used.
+     */
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Meters, these are created after the meter registry is injected.
+     */
+    private TemporalMetrics metrics;
+
+    /**
+     * Entity names that metrics are not recorded for.
+     */
+    @Value("${temporal.metrics.disabled-entities:}")
+    private Set<String> metricsDisabledEntities;
+
+    /**
+     * Scheduled compaction of the segments, {@code null} if it is not scheduled.
+     */
+    private ScheduledFuture<?> segmentCompaction;
+
+    /**
+     * Encodes the versions for the segments, {@code null} if there is no segment storage.
+     */
+    private TemporalSegmentCodec<O> segmentCodec;
+
+    /**
+     * Segments of the entity class, {@code null} if there is no segment storage.
+     */
+    private TemporalSegmentLog segmentLog;
+
+    /**
+     * Segment storage, the versions are only kept in memory if there is none.
+     */
+    @Autowired(required = false)
+    private TemporalSegmentStorage segmentStorage;
+
+    /**
+     * Fields that are copied.
+     */
+    private final List<Field> fields = new ArrayList<>();
+
+    /**
+     * Maximum time to wait for the lock of a key.
+     */
+    @Value("${temporal.write-lock.timeout-millis:10000}")
+    private long lockTimeoutMillis;
+
+    /**
+     * Timelines by key.
+     */
+    private final Map<S, Timeline> timelines = new ConcurrentHashMap<>();
+
+    /**
+     * Validator that the versions are validated with before they are saved, this is the Spring managed validator.
+     */
+    @Autowired
+    private Validator validator;
+
+    /**
+     * All the versions including those that are superseded by id.
+     */
+    private final Map<UUID, O> versions = new ConcurrentHashMap<>();
+
+    /**
+     * @param entityClass entity class
+     * @param clock gets the current time as the temporal type
+     */
+    protected InMemoryTemporalRepository(
+      final Class<O> entityClass,
+      final Supplier<T> clock) {
+
+        this.entityClass = entityClass;
+        this.clock = clock;
+        copier = new TemporalEntityCopier<>(entityClass);
+        final List<Field> mapFields = new ArrayList<>();
+        ReflectionUtils.doWithFields(entityClass, field -> {
+            ReflectionUtils.makeAccessible(field);
+            fields.add(field);
+            if (Map.class.isAssignableFrom(field.getType())) {
+                mapFields.add(field);
+            } else if (!Collection.class.isAssignableFrom(field.getType())) {
+                attributeFields.put(field.getName(), field);
+            }
+        }, ReflectionUtils.COPYABLE_FIELDS);
+        entriesField = mapFields.size() == 1 ? mapFields.get(0) : null;
+    }
+
+    /**
+     * Creates the meters.  If there is segment storage the versions are replayed from the segments and the compaction
+     * is scheduled.
+     */
+    @PostConstruct
+    void start() {
+
+        final String entityName = entityClass.getSimpleName();
+        metrics = new TemporalMetrics(
+          meterRegistry == null ? Metrics.globalRegistry : meterRegistry,
+          entityName,
+          !metricsDisabledEntities.contains(entityName));
+        if (segmentStorage != null) {
+            segmentCodec = new TemporalSegmentCodec<>(entityClass, fields);
+            segmentLog = segmentStorage.open(entityName, payload -> publish(segmentCodec.decode(payload)), this::unpublish);
+            segmentCompaction = segmentStorage.scheduleCompaction(() -> archiveSuperseded(entityClass));
+            log.info("Replayed {} versions of {} from the segments", versions.size(), entityName);
+        }
+    }
+
+    /**
+     * Closes the segments.
+     */
+    @PreDestroy
+    void stop() {
+
+        if (segmentCompaction != null) {
+            segmentCompaction.cancel(false);
+        }
+        if (segmentLog != null) {
+            segmentStorage.close(segmentLog);
+        }
+    }
+
+    @Override
+    public Optional<O> findByKeyAt(
+      final S key,
+      final T at,
+      final Class<O> resultType) {
+
+        return Optional.ofNullable(findRecorded(key, at))
+          .map(copier::copy);
+    }
+
+    @Override
+    public Optional<O> findCurrentByKey(
+      final S key,
+      final Class<O> resultType) {
+
+        return Optional.ofNullable(findRecorded(key, clock.get()))
+          .map(copier::copy);
+    }
+
+    @Override
+    public Map<S, O> findByKeysAt(
+      final Collection<S> keys,
+      final T at,
+      final Class<O> resultType) {
+
+        final long start = System.nanoTime();
+        final Map<S, O> results = new LinkedHashMap<>();
+        for (final S key : keys) {
+            final O o = find(key, at);
+            if (o != null) {
+                results.put(key, copier.copy(o));
+            }
+        }
+        record(metrics.getFindKeys(), start);
+        metrics.getFindHits().increment(results.size());
+        metrics.getFindMisses().increment(new HashSet<>(keys).size() - results.size());
+        return results;
+    }
+
+    @Override
+    public Optional<String> findVersionTagAt(
+      final S key,
+      final T at,
+      final Class<O> resultType) {
+
+        return Optional.ofNullable(findRecorded(key, at))
+          .map(o -> TemporalEntity.versionTag(o.getId(), o.getEffectiveUntil()));
+    }
+
+    @Override
+    public Optional<TemporalProjection> findFieldsByKeyAt(
+      final S key,
+      final T at,
+      final Collection<String> fields,
+      final Class<O> resultType) {
+
+        final Set<String> attributes = new TreeSet<>();
+        final Set<String> entries = new TreeSet<>();
+        for (final String field : fields) {
+            if (attributeFields.containsKey(field)) {
+                attributes.add(field);
+            } else if (entriesField != null) {
+                entries.add(field);
+            } else {
+                throw new InvalidDataAccessApiUsageException(String.format("%s is not an attribute of %s", field, resultType.getSimpleName()));
+            }
+        }
+        return Optional.ofNullable(findRecorded(key, at)).map(o -> {
+            final Map<String, Object> values = new LinkedHashMap<>();
+            for (final String attribute : attributes) {
+                values.put(attribute, ReflectionUtils.getField(attributeFields.get(attribute), o));
+            }
+            final Map<?, ?> column = entries.isEmpty() ? null : (Map<?, ?>) ReflectionUtils.getField(entriesField, o);
+            if (column != null) {
+                for (final String entry : entries) {
+                    if (column.containsKey(entry)) {
+                        values.put(entry, column.get(entry));
+                    }
+                }
+            }
+            return new TemporalProjection(o.getId(), o.getEffectiveUntil(), values);
+        });
+    }
+
+    @Override
+    public Stream<O> findHistory(
+      final S key,
+      final T from,
+      final T to,
+      final boolean includeSuperseded,
+      final Class<O> resultType) {
+
+        final Timeline timeline = timelines.get(key);
+        if (timeline == null || from != null && to != null && from.compareTo(to) >= 0) {
+            return Stream.empty();
+        }
+        if (!includeSuperseded) {
+            NavigableMap<T, O> range = timeline.current;
+            if (from != null) {
+                // the version effective at from is included
+                final T start = range.floorKey(from);
+                range = range.tailMap(start == null ? from : start, true);
+            }
+            if (to != null) {
+                range = range.headMap(to, false);
+            }
+            return range.values().stream()
+              .map(copier::copy);
+        }
+        // the history is ordered by id so versions with the same effective on stay in the order they were saved
+        return timeline.history.values().stream()
+          .filter(o -> from == null || o.getEffectiveUntil() == null || o.getEffectiveUntil().compareTo(from) > 0)
+          .filter(o -> to == null || o.getEffectiveOn().compareTo(to) < 0)
+          .sorted((a, b) -> a.getEffectiveOn().compareTo(b.getEffectiveOn()))
+          .map(copier::copy);
+    }
+
+    @Override
+    public Stream<O> findChanged(
+      final Instant since,
+      final UUID afterId,
+      final int limit,
+      final Class<O> resultType) {
+
+        if (afterId != null && since == null) {
+            throw new InvalidDataAccessApiUsageException("since is required with afterId");
+        }
+        final Instant until = Instant.now().minusMillis(changedSettleMillis);
+        final NavigableMap<Cursor, O> after = since == null
+          ? changes
+          : changes.tailMap(new Cursor(since, afterId == null ? MIN_ID : afterId), afterId == null);
+        return after.values().stream()
+          .takeWhile(o -> o.getRecordedAt().isBefore(until))
+          .limit(limit)
+          .map(copier::copy);
+    }
+
+    @Override
+    public Stream<O> findSnapshotAt(
+      final T at,
+      final Class<O> resultType) {
+
+        final List<S> keys = new ArrayList<>(timelines.keySet());
+        Collections.sort(keys);
+        return keys.stream()
+          .map(key -> find(key, at))
+          .filter(Objects::nonNull)
+          .map(copier::copy);
+    }
+
+    /**
+     * Finds a version by id, including versions that are superseded.
+     *
+     * @param id version id
+     * @return version
+     */
+    public Optional<O> findById(final UUID id) {
+
+        return Optional.ofNullable(findVersion(id))
+          .map(copier::copy);
+    }
+
+    /**
+     * @param id version id
+     * @return {@code true} if there is a version with the id
+     */
+    public boolean existsById(final UUID id) {
+
+        return findVersion(id) != null;
+    }
+
+    /**
+     * @return all the versions including those that are superseded
+     */
+    public Iterable<O> findAll() {
+
+        final List<O> found = new ArrayList<>();
+        for (final O o : versions.values()) {
+            found.add(copier.copy(o));
+        }
+        return found;
+    }
+
+    /**
+     * @param ids version ids
+     * @return the versions with the ids
+     */
+    public Iterable<O> findAllById(final Iterable<UUID> ids) {
+
+        final List<O> found = new ArrayList<>();
+        for (final UUID id : ids) {
+            final O o = findVersion(id);
+            if (o != null) {
+                found.add(copier.copy(o));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return number of versions including those that are superseded
+     */
+    public long count() {
+
+        return versions.size();
+    }
+
+    /**
+     * Deletes a version by id.  Like deleting its row, the other versions of the key are not changed.
+     *
+     * @param id version id
+     * @throws EmptyResultDataAccessException if there is no version with the id
+     */
+    public void deleteById(final UUID id) {
+
+        final O version = findVersion(id);
+        if (version == null) {
+            throw new EmptyResultDataAccessException(String.format("No %s entity with id %s exists!", entityClass, id), 1);
+        }
+        delete(Collections.singletonList(version));
+    }
+
+    /**
+     * Deletes a version if it exists.
+     *
+     * @param entity version
+     */
+    public void delete(final O entity) {
+
+        deleteAll(Collections.singletonList(entity));
+    }
+
+    /**
+     * Deletes the versions that exist.
+     *
+     * @param entities versions
+     */
+    public void deleteAll(final Iterable<? extends O> entities) {
+
+        final List<O> found = new ArrayList<>();
+        for (final O entity : entities) {
+            final O version = entity.getId() == null ? null : findVersion(entity.getId());
+            if (version != null) {
+                found.add(version);
+            }
+        }
+        delete(found);
+    }
+
+    /**
+     * Deletes all the versions.
+     */
+    public void deleteAll() {
+
+        deleteAll(findAll());
+    }
+
+    @Override
+    public O saveTemporal(final O object) {
+
+        validate(object);
+        final long start = System.nanoTime();
+        final TemporalChange change = write(Collections.singleton(object.getKey()), writes -> saveLocked(object, Instant.now(), writes));
+        record(metrics.getSave(), start);
+        if (changeFeed != null) {
+            changeFeed.publishAfterCommit(Collections.singletonList(change));
+        }
+        return object;
+    }
+
+    @Override
+    public List<O> saveAllTemporal(final Iterable<O> objects) {
+
+        final List<O> saved = new ArrayList<>();
+        final Set<S> keys = new LinkedHashSet<>();
+        for (final O object : objects) {
+            validate(object);
+            saved.add(object);
+            keys.add(object.getKey());
+        }
+        final List<TemporalChange> savedChanges = write(keys, writes -> {
+            final Instant recordedAt = Instant.now();
+            final List<TemporalChange> c = new ArrayList<>(saved.size());
+            for (final O object : saved) {
+                c.add(saveLocked(object, recordedAt, writes));
+            }
+            // objects that were superseded or had their effective until changed by a later object
+            for (final O object : saved) {
+                final O version = writes.stored.get(object.getId());
+                object.setSupersededBy(version.getSupersededBy());
+                object.setEffectiveUntil(version.getEffectiveUntil());
+            }
+            return c;
+        });
+        if (changeFeed != null) {
+            changeFeed.publishAfterCommit(savedChanges);
+        }
+        return saved;
+    }
+
+    /**
+     * Effective until is always maintained.
+     *
+     * @return {@code 0}
+     */
+    @Override
+    public int backfillEffectiveUntil(final Class<O> resultType) {
+
+        return 0;
+    }
+
+    /**
+     * Removes the versions that were superseded by a correction and compacts the segments so they only have the
+     * latest record of the versions that are not superseded.  Without segment storage the superseded versions are kept
+     * for the history as there is no history table to move them to.
+     *
+     * @return number of superseded versions removed from memory
+     */
+    @Override
+    public long archiveSuperseded(final Class<O> resultType) {
+
+        if (segmentLog == null) {
+            return 0;
+        }
+        segmentLog.compact(
+          payload -> segmentCodec.decode(payload).getId(),
+          payload -> !NOT_SUPERSEDED.equals(segmentCodec.decode(payload).getSupersededBy()));
+        long removed = 0;
+        for (final O version : versions.values()) {
+            final UUID id = version.getId();
+            if (!NOT_SUPERSEDED.equals(version.getSupersededBy()) && versions.remove(id, version)) {
+                timelines.get(version.getKey()).history.remove(id, version);
+                changes.remove(new Cursor(version.getRecordedAt(), id), version);
+                ++removed;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Lookups of the current version already go directly to the timeline.
+     *
+     * @return {@code 0}
+     */
+    @Override
+    public long rollForwardCurrentView(final Class<O> resultType) {
+
+        return 0;
+    }
+
+    /**
+     * Encodes the versions that were stored by a write for the segments.
+     *
+     * @param stored versions in the order they are published
+     * @return payloads of the records
+     */
+    private List<byte[]> encode(final List<O> stored) {
+
+        final List<byte[]> records = new ArrayList<>(stored.size());
+        for (final O version : stored) {
+            records.add(segmentCodec.encode(version));
+        }
+        return records;
+    }
+
+    /**
+     * Publishes a version that was committed or replayed from the segments, replacing the version with the same id.  A
+     * version that is not superseded replaces the version with the same effective on in the timeline, so the versions
+     * that are not superseded are published before the versions they supersede to keep lookups from finding none.
+     *
+     * @param version version
+     */
+    private void publish(final O version) {
+
+        final Timeline timeline = timelines.computeIfAbsent(version.getKey(), k -> new Timeline());
+        final UUID id = version.getId();
+        final O previous = versions.put(id, version);
+        timeline.history.put(id, version);
+        changes.put(new Cursor(version.getRecordedAt(), id), version);
+        if (previous != null) {
+            changes.remove(new Cursor(previous.getRecordedAt(), id), previous);
+        }
+        if (NOT_SUPERSEDED.equals(version.getSupersededBy())) {
+            timeline.current.put(version.getEffectiveOn(), version);
+        } else if (previous != null) {
+            timeline.current.remove(version.getEffectiveOn(), previous);
+        }
+    }
+
+    /**
+     * Removes a version that was deleted.
+     *
+     * @param id version id
+     */
+    private void unpublish(final UUID id) {
+
+        final O version = versions.remove(id);
+        if (version == null) {
+            return;
+        }
+        final Timeline timeline = timelines.get(version.getKey());
+        timeline.history.remove(id, version);
+        timeline.current.remove(version.getEffectiveOn(), version);
+        changes.remove(new Cursor(version.getRecordedAt(), id), version);
+    }
+
+    /**
+     * Finds the version of a key that is effective at a given time and records the lookup.
+     *
+     * @param key key
+     * @param at at which time
+     * @return version, {@code null} if there is none
+     */
+    private O findRecorded(
+      final S key,
+      final T at) {
+
+        final long start = System.nanoTime();
+        final O found = find(key, at);
+        record(metrics.getFind(), start);
+        (found == null ? metrics.getFindMisses() : metrics.getFindHits()).increment();
+        return found;
+    }
+
+    /**
+     * Finds the version of a key that is effective at a given time.  In a transaction that saved the key the versions
+     * it saved are included.
+     *
+     * @param key key
+     * @param at at which time
+     * @return version, {@code null} if there is none
+     */
+    private O find(
+      final S key,
+      final T at) {
+
+        final WriteLog writes = pendingWrites();
+        NavigableMap<T, O> current = writes == null ? null : writes.current.get(key);
+        if (current == null) {
+            final Timeline timeline = timelines.get(key);
+            if (timeline == null) {
+                return null;
+            }
+            current = timeline.current;
+        }
+        final Map.Entry<T, O> version = current.floorEntry(at);
+        return version == null ? null : version.getValue();
+    }
+
+    /**
+     * Finds a version by id.  In a transaction the versions it saved and deleted are taken into account.
+     *
+     * @param id version id
+     * @return version, {@code null} if there is none
+     */
+    private O findVersion(final UUID id) {
+
+        final WriteLog writes = pendingWrites();
+        if (writes == null) {
+            return versions.get(id);
+        } else if (writes.deleted.contains(id)) {
+            return null;
+        }
+        final O pending = writes.stored.get(id);
+        return pending == null ? versions.get(id) : pending;
+    }
+
+    /**
+     * Deletes versions with their keys locked.
+     *
+     * @param found versions that are deleted
+     */
+    private void delete(final List<O> found) {
+
+        if (found.isEmpty()) {
+            return;
+        }
+        final Set<S> keys = new HashSet<>();
+        for (final O version : found) {
+            keys.add(version.getKey());
+        }
+        write(keys, writes -> {
+            for (final O version : found) {
+                writes.delete(version.getId());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return writes of the transaction that have not been published, {@code null} if there are none
+     */
+    private WriteLog pendingWrites() {
+
+        return TransactionSynchronizationManager.isSynchronizationActive()
+          ? (WriteLog) TransactionSynchronizationManager.getResource(this)
+          : null;
+    }
+
+    /**
+     * Saves a version with its key locked.  The version that is superseded or whose effective until changes is
+     * replaced by a copy.  The versions are stored in the write log and are published when the write completes.
+     *
+     * @param object version to save, its id, effective until and recorded at are set
+     * @param recordedAt when the version is recorded
+     * @param writes writes of the transaction
+     * @return change
+     */
+    private TemporalChange saveLocked(
+      final O object,
+      final Instant recordedAt,
+      final WriteLog writes) {
+
+        final NavigableMap<T, O> current = writes.current(object.getKey());
+        final T effectiveOn = object.getEffectiveOn();
+        object.assignId(TimeOrderedUuid.next());
+        object.setRecordedAt(recordedAt);
+        final O existing = current.get(effectiveOn);
+        if (existing != null) {
+            object.setEffectiveUntil(existing.getEffectiveUntil());
+            metrics.getSupersedes().increment();
+            final O superseded = copier.copy(existing);
+            superseded.setSupersededBy(object.getId());
+            superseded.setRecordedAt(recordedAt);
+            writes.store(superseded);
+        } else {
+            final Map.Entry<T, O> next = current.higherEntry(effectiveOn);
+            object.setEffectiveUntil(next == null ? null : next.getKey());
+            final Map.Entry<T, O> previous = current.lowerEntry(effectiveOn);
+            if (previous != null) {
+                final O ended = copier.copy(previous.getValue());
+                ended.setEffectiveUntil(effectiveOn);
+                ended.setRecordedAt(recordedAt);
+                writes.store(ended);
+            }
+        }
+        writes.store(copier.copy(object));
+        return new TemporalChange(0, entityClass.getSimpleName(), object.getKey(), effectiveOn, object.getId(), existing == null ? null : existing.getId());
+    }
+
+    /**
+     * Performs a write with the keys locked.  If there is a transaction the versions that were stored are published
+     * when it commits and the locks are held until it completes, otherwise they are published and the locks are
+     * released when the write returns.  The versions that were stored are appended to the segments before they are
+     * published.  A write that fails or is rolled back has nothing to undo as nothing was published.
+     *
+     * @param keys keys that are written
+     * @param write write operation, it adds the versions it stores to the log that is passed to it
+     * @param <R> result type of the write
+     * @return result of the write
+     */
+    private <R> R write(
+      final Collection<S> keys,
+      final Function<WriteLog, R> write) {
+
+        final boolean transaction = TransactionSynchronizationManager.isSynchronizationActive();
+        WriteLog writes = transaction ? (WriteLog) TransactionSynchronizationManager.getResource(this) : null;
+        if (writes == null) {
+            writes = new WriteLog();
+            if (transaction) {
+                TransactionSynchronizationManager.bindResource(this, writes);
+                TransactionSynchronizationManager.registerSynchronization(writes);
+            }
+        }
+        final List<ReentrantLock> locks = new ArrayList<>(keys.size());
+        try {
+            // the keys are locked in their natural order so concurrent writes of the same keys cannot deadlock
+            final List<S> ordered = new ArrayList<>(keys);
+            Collections.sort(ordered);
+            for (final S key : ordered) {
+                final ReentrantLock lock = timelines.computeIfAbsent(key, k -> new Timeline()).lock;
+                lock(lock);
+                locks.add(lock);
+            }
+            final R result = write.apply(writes);
+            if (!transaction) {
+                final List<O> published = writes.published();
+                if (segmentLog != null && !writes.isEmpty()) {
+                    segmentLog.append(encode(published), writes.deleted);
+                }
+                published.forEach(this::publish);
+                writes.deleted.forEach(this::unpublish);
+            }
+            return result;
+        } finally {
+            if (transaction) {
+                writes.locks.addAll(locks);
+            } else {
+                locks.forEach(ReentrantLock::unlock);
+            }
+        }
+    }
+
+    private void lock(final ReentrantLock lock) {
+
+        try {
+            if (!lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new CannotAcquireLockException("Timed out waiting for the write lock");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("Interrupted waiting for the write lock");
+        }
+    }
+
+    /**
+     * Validates if the object is valid for saving.
+     *
+     * @param object object to validate.
+     */
+    private void validate(final O object) {
+
+        final Set<ConstraintViolation<O>> violations = validator.validate(object);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        if (!NOT_SUPERSEDED.equals(object.getSupersededBy())) {
+            throw new InvalidDataAccessApiUsageException(String.format("Temporal object must not be superseded, got: %s", object.getSupersededBy()));
+        }
+        if (object.getId() != null) {
+            log.warn(String.format("Temporal object ID should not be set, got: %s, resetting to null", object.getId()));
+            object.nullifyId();
+        }
+    }
+
+    /**
+     * Position of a version in the order of {@link #findChanged(Instant, UUID, int, Class)}.
+     */
+    private static final class Cursor implements
+      Comparable<Cursor> {
+
+        private final UUID id;
+
+        private final Instant recordedAt;
+
+        Cursor(
+          final Instant recordedAt,
+          final UUID id) {
+
+            this.recordedAt = recordedAt;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(final Cursor o) {
+
+            final int c = recordedAt.compareTo(o.recordedAt);
+            return c != 0 ? c : id.compareTo(o.id);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+
+            return o instanceof Cursor && compareTo((Cursor) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(recordedAt, id);
+        }
+
+    }
+
+    /**
+     * Versions of a key.
+     */
+    private final class Timeline {
+
+        /**
+         * All the versions of the key including those that are superseded by id.
+         */
+        private final ConcurrentSkipListMap<UUID, O> history = new ConcurrentSkipListMap<>();
+
+        /**
+         * Versions that are not superseded by effective on.
+         */
+        private final ConcurrentSkipListMap<T, O> current = new ConcurrentSkipListMap<>();
+
+        /**
+         * Serializes the saves of the key.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+    }
+
+    /**
+     * Versions that were stored by a write and have not been published yet.  In a transaction this is bound to it with
+     * the repository as the key.  The versions are appended to the segments before it commits and are only replayed
+     * once its commit record is appended after it commits, when they are also published.  The locks are released when
+     * it completes.
+     */
+    private final class WriteLog extends
+      TransactionSynchronizationAdapter {
+
+        /**
+         * Versions that are not superseded by effective on, for each key that was written.  These start as a copy of
+         * the timeline of the key and include the versions that were stored.
+         */
+        private final Map<S, NavigableMap<T, O>> current = new HashMap<>();
+
+        /**
+         * Ids of the published versions that were deleted.
+         */
+        private final Set<UUID> deleted = new LinkedHashSet<>();
+
+        /**
+         * Locks that are held, a lock is here once for each time it was acquired.
+         */
+        private final List<ReentrantLock> locks = new ArrayList<>();
+
+        /**
+         * Latest state of the versions that were stored by id, in the order they were first stored.
+         */
+        private final Map<UUID, O> stored = new LinkedHashMap<>();
+
+        /**
+         * Transaction the versions were appended to the segments in, {@code 0} if they were not appended.
+         */
+        private long segmentTransaction;
+
+        /**
+         * @param key key that is locked
+         * @return versions of the key that are not superseded by effective on, including those that were stored
+         */
+        NavigableMap<T, O> current(final S key) {
+
+            return current.computeIfAbsent(key, k -> new TreeMap<>(timelines.get(k).current));
+        }
+
+        /**
+         * Stores a version replacing the version with the same id.
+         *
+         * @param version version
+         */
+        void store(final O version) {
+
+            stored.put(version.getId(), version);
+            if (NOT_SUPERSEDED.equals(version.getSupersededBy())) {
+                current(version.getKey()).put(version.getEffectiveOn(), version);
+            }
+        }
+
+        /**
+         * Deletes a version that was published or stored.
+         *
+         * @param id version id, its key is locked
+         */
+        void delete(final UUID id) {
+
+            final O stored = this.stored.remove(id);
+            final O version = stored == null ? versions.get(id) : stored;
+            if (version == null || deleted.contains(id)) {
+                return;
+            }
+            current(version.getKey()).remove(version.getEffectiveOn(), version);
+            if (versions.containsKey(id)) {
+                deleted.add(id);
+            }
+        }
+
+        /**
+         * @return {@code true} if nothing was stored or deleted
+         */
+        boolean isEmpty() {
+
+            return stored.isEmpty() && deleted.isEmpty();
+        }
+
+        /**
+         * @return the versions that were stored in the order they are published
+         */
+        List<O> published() {
+
+            final List<O> published = new ArrayList<>(stored.size());
+            for (final O version : stored.values()) {
+                if (NOT_SUPERSEDED.equals(version.getSupersededBy())) {
+                    published.add(version);
+                }
+            }
+            for (final O version : stored.values()) {
+                if (!NOT_SUPERSEDED.equals(version.getSupersededBy())) {
+                    published.add(version);
+                }
+            }
+            return published;
+        }
+
+        @Override
+        public void beforeCommit(final boolean readOnly) {
+
+            if (segmentLog != null && !isEmpty()) {
+                segmentTransaction = segmentLog.appendPending(encode(published()), deleted);
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+
+            if (segmentTransaction != 0) {
+                segmentLog.commit(segmentTransaction);
+            }
+            published().forEach(InMemoryTemporalRepository.this::publish);
+            deleted.forEach(InMemoryTemporalRepository.this::unpublish);
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+
+            TransactionSynchronizationManager.unbindResource(InMemoryTemporalRepository.this);
+            if (segmentTransaction != 0) {
+                // the commit record was appended unless the transaction rolled back or appending it failed
+                segmentLog.abort(segmentTransaction);
+            }
+            locks.forEach(ReentrantLock::unlock);
+        }
+
+    }
+
+}
@@ -0,0 +1,53 @@
+package net.trajano.temporal.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import javax.persistence.PersistenceException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores a map of additional attributes as a JSON object in a single column.  This is an alternative to an {@link
+ * javax.persistence.ElementCollection} which needs a separate table and another select to load the attributes.  The
+ * trade off is that the attributes cannot be queried.  An empty map is stored as {@code NULL}.
+ */
+@Converter
+public class JsonAttributesConverter implements
+  AttributeConverter<Map<String, String>, String> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final TypeReference<ConcurrentHashMap<String, String>> MAP_TYPE = new TypeReference<ConcurrentHashMap<String, String>>() {
+
+    };
+
+    @Override
+    public String convertToDatabaseColumn(final Map<String, String> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            return null;
+        }
+        try {
+            return MAPPER.writeValueAsString(attributes);
+        } catch (final JsonProcessingException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    @Override
+    public Map<String, String> convertToEntityAttribute(final String json) {
+        if (json == null) {
+            return new ConcurrentHashMap<>();
+        }
+        try {
+            return MAPPER.readValue(json, MAP_TYPE);
+        } catch (final IOException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package net.trajano.temporal.domain;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.LockTimeoutException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped in-process write locks for temporal keys.  Saves of the same key are serialized so they do not both find the
+ * same existing version, while saves of unrelated keys only contend if they hash to the same stripe.  A lock is held
+ * until the transaction that acquired it completes so the next writer sees the committed version.
+ * <p>
+ * Multiple stripes are always acquired in index order.  As a transaction may still acquire more stripes later, a lock
+ * that cannot be acquired within the timeout fails with a {@link LockTimeoutException} rather than waiting forever.
+ */
+final class KeyLocks {
+
+    private final int mask;
+
+    private final ReentrantLock[] stripes;
+
+    private final long timeoutMillis;
+
+    /**
+     * @param stripes number of stripes, rounded up to a power of two
+     * @param timeoutMillis maximum time to wait for a stripe
+     */
+    KeyLocks(
+      final int stripes,
+      final long timeoutMillis) {
+
+        final int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; ++i) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    private int index(
+      final Class<?> resultType,
+      final Object key) {
+
+        final int h = 31 * resultType.hashCode() + Objects.hashCode(key);
+        return (h ^ h >>> 16) & mask;
+    }
+
+    /**
+     * Locks the keys until the current transaction completes.
+     *
+     * @param resultType entity class
+     * @param keys keys to lock
+     */
+    void lock(
+      final Class<?> resultType,
+      final Collection<?> keys) {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Write locks can only be acquired in a transaction");
+        }
+        final int[] indices = keys.stream()
+          .mapToInt(key -> index(resultType, key))
+          .distinct()
+          .toArray();
+        Arrays.sort(indices);
+        for (final int i : indices) {
+            lock(stripes[i]);
+        }
+    }
+
+    private void lock(final ReentrantLock lock) {
+        try {
+            if (!lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new LockTimeoutException("Timed out waiting for the write lock");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LockTimeoutException("Interrupted waiting for the write lock");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+            @Override
+            public void afterCompletion(final int status) {
+                lock.unlock();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,62 @@
+package net.trajano.temporal.domain;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Configures a read only replica when {@code temporal.replica.url} is set.  The primary is configured from the
+ * {@code spring.datasource} properties as usual and the replica from the {@code temporal.replica} properties.  The
+ * connection pools are not exposed as beans, the only data source is the one that routes between them using
+ * {@link ReplicaRouting}.
+ */
+@Configuration
+@ConditionalOnProperty(
+  prefix = "temporal.replica",
+  name = "url"
+)
+public class ReplicaDataSourceConfiguration {
+
+    @Bean
+    public DataSource dataSource(
+      final DataSourceProperties properties,
+      final Environment environment,
+      @Value("${temporal.replica.url}") final String replicaUrl,
+      @Value("${temporal.replica.username:${spring.datasource.username:}}") final String replicaUsername,
+      @Value("${temporal.replica.password:${spring.datasource.password:}}") final String replicaPassword) {
+
+        final Binder binder = Binder.get(environment);
+        final HikariDataSource primary = properties.initializeDataSourceBuilder()
+          .type(HikariDataSource.class)
+          .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        final HikariDataSource replica = DataSourceBuilder.create()
+          .type(HikariDataSource.class)
+          .url(replicaUrl)
+          .username(replicaUsername)
+          .password(replicaPassword)
+          .build();
+        binder.bind("temporal.replica.hikari", Bindable.ofInstance(replica));
+        replica.setReadOnly(true);
+        return ReplicaRouting.dataSource(primary, replica);
+    }
+
+    @Bean
+    public ReplicaRouting replicaRouting(
+      @Value("${temporal.replica.read-your-writes-millis:0}") final long readYourWritesMillis,
+      @Value("${temporal.replica.max-recent-writes:10000}") final int maxRecentWrites) {
+
+        return new ReplicaRouting(readYourWritesMillis, maxRecentWrites);
+    }
+
+}
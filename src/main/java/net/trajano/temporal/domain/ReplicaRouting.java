@@ -0,0 +1,233 @@
+package net.trajano.temporal.domain;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Routes connections between the primary and a read only replica.  Read only transactions and the streaming reads use
+ * the replica, everything else uses the primary.  As the replica lags the primary, keys that were saved by this
+ * process within the read your writes window are read from the primary.
+ * <p>
+ * The routing is decided when the connection is first used rather than when the transaction begins, so the data
+ * source returned by {@link #dataSource(DataSource, DataSource)} obtains connections lazily.
+ */
+public class ReplicaRouting {
+
+    /**
+     * Data source that a connection is obtained from.
+     */
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    /**
+     * Target that overrides the transaction for the current thread.
+     */
+    private static final ThreadLocal<Target> FORCED_TARGET = new ThreadLocal<>();
+
+    /**
+     * Number of recently written keys above which expired keys are removed.
+     */
+    private final int maxRecentWrites;
+
+    private final long readYourWritesMillis;
+
+    /**
+     * Maps the entity class and key to the time the window for the key ends.
+     */
+    private final Map<Object, Long> recentWrites = new ConcurrentHashMap<>();
+
+    /**
+     * @param readYourWritesMillis how long keys are read from the primary after they are saved, {@code 0} to disable
+     * @param maxRecentWrites number of recently written keys above which expired keys are removed
+     */
+    public ReplicaRouting(
+      final long readYourWritesMillis,
+      final int maxRecentWrites) {
+
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.maxRecentWrites = maxRecentWrites;
+    }
+
+    /**
+     * Determines the target for a connection that is being obtained on the current thread.
+     *
+     * @return target
+     */
+    static Target currentTarget() {
+        final Target forced = FORCED_TARGET.get();
+        if (forced != null) {
+            return forced;
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Target.REPLICA : Target.PRIMARY;
+    }
+
+    /**
+     * Creates a data source that routes using {@link #currentTarget()}.  Closing it closes the primary and replica.
+     *
+     * @param primary primary data source
+     * @param replica replica data source
+     * @return routing data source
+     */
+    public static DataSource dataSource(
+      final DataSource primary,
+      final DataSource replica) {
+
+        final AbstractRoutingDataSource routingDataSource = new AbstractRoutingDataSource() {
+
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return currentTarget();
+            }
+        };
+        final Map<Object, Object> targets = new ConcurrentHashMap<>();
+        targets.put(Target.PRIMARY, primary);
+        targets.put(Target.REPLICA, replica);
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(primary);
+        routingDataSource.afterPropertiesSet();
+        return new RoutingDataSourceProxy(routingDataSource, primary, replica);
+    }
+
+    /**
+     * Obtains connections lazily from the routing data source.
+     */
+    private static final class RoutingDataSourceProxy extends LazyConnectionDataSourceProxy implements
+      Closeable {
+
+        private final DataSource primary;
+
+        private final DataSource replica;
+
+        RoutingDataSourceProxy(
+          final DataSource routingDataSource,
+          final DataSource primary,
+          final DataSource replica) {
+
+            super(routingDataSource);
+            this.primary = primary;
+            this.replica = replica;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (replica instanceof Closeable) {
+                    ((Closeable) replica).close();
+                }
+            } finally {
+                if (primary instanceof Closeable) {
+                    ((Closeable) primary).close();
+                }
+            }
+        }
+    }
+
+    private boolean isRecentlyWritten(
+      final Class<?> resultType,
+      final Collection<?> keys) {
+
+        if (readYourWritesMillis <= 0) {
+            return false;
+        }
+        final long now = System.currentTimeMillis();
+        for (final Object key : keys) {
+            final Long until = recentWrites.get(Arrays.asList(resultType, key));
+            if (until != null && until > now) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Performs a read.  It is read from the replica unless it is part of a transaction that writes or any of the keys
+     * were recently written.
+     *
+     * @param resultType entity class
+     * @param keys keys that are read, empty if the read is not for specific keys
+     * @param read read operation, this must obtain its connection before it returns
+     * @param <R> result type
+     * @return result of the read
+     */
+    <R> R read(
+      final Class<?> resultType,
+      final Collection<?> keys,
+      final Supplier<R> read) {
+
+        final boolean writing = TransactionSynchronizationManager.isActualTransactionActive()
+          && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return read(writing || isRecentlyWritten(resultType, keys) ? Target.PRIMARY : Target.REPLICA, read);
+    }
+
+    /**
+     * Performs a read from the primary.  This is used to fill caches, as what is read from a replica that is behind
+     * would otherwise be kept until the key is saved again.
+     *
+     * @param read read operation, this must obtain its connection before it returns
+     * @param <R> result type
+     * @return result of the read
+     */
+    <R> R readPrimary(final Supplier<R> read) {
+
+        return read(Target.PRIMARY, read);
+    }
+
+    private static <R> R read(
+      final Target target,
+      final Supplier<R> read) {
+
+        final Target previous = FORCED_TARGET.get();
+        FORCED_TARGET.set(target);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                FORCED_TARGET.remove();
+            } else {
+                FORCED_TARGET.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Records the keys as written once the current transaction commits.
+     *
+     * @param resultType entity class
+     * @param keys keys
+     */
+    void recordWrites(
+      final Class<?> resultType,
+      final Collection<?> keys) {
+
+        if (readYourWritesMillis <= 0 || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+            @Override
+            public void afterCommit() {
+                final long now = System.currentTimeMillis();
+                if (recentWrites.size() > maxRecentWrites) {
+                    recentWrites.values().removeIf(until -> until <= now);
+                }
+                for (final Object key : keys) {
+                    recentWrites.put(Arrays.asList(resultType, key), now + readYourWritesMillis);
+                }
+            }
+        });
+    }
+
+}
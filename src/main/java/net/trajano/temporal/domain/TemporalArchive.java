@@ -0,0 +1,98 @@
+package net.trajano.temporal.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
+/**
+ * Native SQL that moves superseded versions of a temporal entity class from its table to a history table with the same
+ * columns.  This is native SQL as the history table is not mapped, the rows are read back as the same entity class.
+ */
+@Getter
+final class TemporalArchive {
+
+    static final String PARAM_IDS = "ids";
+
+    /**
+     * History table.
+     */
+    private final String archiveTable;
+
+    /**
+     * Creates the history table with the columns of the entity table.
+     */
+    private final String createArchiveTable;
+
+    /**
+     * Copies versions to the history table.
+     */
+    private final String insertArchive;
+
+    /**
+     * Deletes versions from the entity table.
+     */
+    private final String deleteLive;
+
+    @Getter(AccessLevel.NONE)
+    private final String effectiveOnColumn;
+
+    @Getter(AccessLevel.NONE)
+    private final String effectiveUntilColumn;
+
+    @Getter(AccessLevel.NONE)
+    private final String keyColumn;
+
+    @Getter(AccessLevel.NONE)
+    private final String liveTable;
+
+    /**
+     * @param persister entity persister
+     * @param archiveTableSuffix appended to the entity table name for the history table
+     */
+    TemporalArchive(
+      final AbstractEntityPersister persister,
+      final String archiveTableSuffix) {
+
+        liveTable = persister.getTableName();
+        archiveTable = liveTable + archiveTableSuffix;
+        keyColumn = persister.getPropertyColumnNames("key")[0];
+        effectiveOnColumn = persister.getPropertyColumnNames("effectiveOn")[0];
+        effectiveUntilColumn = persister.getPropertyColumnNames("effectiveUntil")[0];
+        final String idColumn = persister.getIdentifierColumnNames()[0];
+
+        createArchiveTable = "create table " + archiveTable + " as (select * from " + liveTable + ") with no data";
+        insertArchive = "insert into " + archiveTable
+          + " select * from " + liveTable
+          + " where " + idColumn + " in (:ids)";
+        deleteLive = "delete from " + liveTable
+          + " where " + idColumn + " in (:ids)";
+    }
+
+    /**
+     * Finds all the versions of a key in the entity table and the history table that are effective at any time between
+     * from (inclusive) and to (exclusive) ordered by effective on.  This is the archive equivalent of
+     * {@link TemporalQueries#getFindHistory(boolean, boolean, boolean)} with superseded versions included.
+     *
+     * @param hasFrom {@code true} if the {@code from} parameter is bound
+     * @param hasTo {@code true} if the {@code to} parameter is bound
+     * @return native query
+     */
+    String getFindHistory(
+      final boolean hasFrom,
+      final boolean hasTo) {
+
+        final StringBuilder conditions = new StringBuilder(" where ").append(keyColumn).append(" = :key");
+        if (hasFrom) {
+            conditions.append(" and (")
+              .append(effectiveUntilColumn).append(" is null or ")
+              .append(effectiveUntilColumn).append(" > :from)");
+        }
+        if (hasTo) {
+            conditions.append(" and ").append(effectiveOnColumn).append(" < :to");
+        }
+        return "select * from " + liveTable + conditions
+          + " union all select * from " + archiveTable + conditions
+          + " order by " + effectiveOnColumn;
+    }
+
+}
@@ -0,0 +1,70 @@
+package net.trajano.temporal.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.time.temporal.Temporal;
+import java.util.UUID;
+
+/**
+ * A version of a temporal entity that was saved.  This only identifies the version, the version itself is retrieved
+ * from the repository if needed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class TemporalChange {
+
+    /**
+     * Sequence number of the change.  This increases with every change published in the process, and across restarts.
+     */
+    private final long sequence;
+
+    /**
+     * Entity name.
+     */
+    private final String entity;
+
+    private final Serializable key;
+
+    private final Temporal effectiveOn;
+
+    /**
+     * ID of the version that was saved, {@code null} for a reset.
+     */
+    private final UUID id;
+
+    /**
+     * ID of the version that was superseded by this version, {@code null} if there was no version with the same
+     * effective on.
+     */
+    private final UUID supersededId;
+
+    /**
+     * Creates a reset, which tells a subscriber that the changes it asked for are no longer available.  It has to
+     * catch up with the changed versions instead and then continues with the changes after the reset.
+     *
+     * @param sequence sequence number of the last change that was published
+     * @param entity entity name
+     * @return reset
+     */
+    static TemporalChange reset(
+      final long sequence,
+      final String entity) {
+
+        return new TemporalChange(sequence, entity, null, null, null, null);
+    }
+
+    /**
+     * @return {@code true} if this is a reset rather than a change
+     */
+    @JsonIgnore
+    public boolean isReset() {
+
+        return id == null;
+    }
+
+}
@@ -0,0 +1,200 @@
+package net.trajano.temporal.domain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.ReplayProcessor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes the versions saved by the temporal repositories once their transaction commits.  The most recent changes
+ * of each entity class are kept in a bounded in-memory ring buffer so a subscriber that reconnects can resume from the
+ * last sequence number it received as long as it has not fallen out of the buffer.  Otherwise, or if the sequence
+ * number is not from this process, the subscriber is sent a reset change first so it can catch up another way.
+ * <p>
+ * Sequence numbers start from the time the process started shifted left by {@value #EPOCH_SHIFT} bits, so they keep
+ * increasing when the process is restarted unless more than that many changes were published per millisecond.
+ * <p>
+ * Each subscriber has its own bounded buffer so a slow subscriber does not hold up the others.  When it overflows
+ * either the oldest changes are dropped or the subscriber is disconnected with an error if
+ * {@code temporal.changes.disconnect-slow-subscribers} is set.
+ */
+@Slf4j
+@Component
+public class TemporalChangeFeed {
+
+    /**
+     * Bits the start time is shifted left by for the first sequence number.
+     */
+    private static final int EPOCH_SHIFT = 20;
+
+    private final boolean disconnectSlowSubscribers;
+
+    /**
+     * Sequence number before the first change published by this process.
+     */
+    private final long epoch;
+
+    /**
+     * Changes by entity name, guarded by {@code this}.
+     */
+    private final Map<String, EntityChanges> entities = new HashMap<>();
+
+    private final int historySize;
+
+    /**
+     * Sequence number of the last change that was published, guarded by {@code this}.
+     */
+    private long sequence;
+
+    private final int subscriberBufferSize;
+
+    public TemporalChangeFeed(
+      @Value("${temporal.changes.history-size:1024}") final int historySize,
+      @Value("${temporal.changes.subscriber-buffer-size:256}") final int subscriberBufferSize,
+      @Value("${temporal.changes.disconnect-slow-subscribers:false}") final boolean disconnectSlowSubscribers) {
+
+        this.historySize = historySize;
+        epoch = System.currentTimeMillis() << EPOCH_SHIFT;
+        sequence = epoch;
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.disconnectSlowSubscribers = disconnectSlowSubscribers;
+    }
+
+    /**
+     * Streams the changes of an entity class.  If the changes after the requested sequence number are no longer
+     * buffered, or the sequence number was not published by this process, a {@link TemporalChange#isReset() reset}
+     * change with the current sequence number is streamed first followed by the changes after it.
+     *
+     * @param entityClass entity class
+     * @param after only changes with a sequence number after this are streamed, {@code null} to only stream changes
+     * that are published after subscribing.
+     * @return changes, this does not complete.
+     */
+    public Flux<TemporalChange> changes(
+      final Class<?> entityClass,
+      final Long after) {
+
+        final String entity = entityClass.getSimpleName();
+        final EntityChanges entityChanges;
+        final long afterSequence;
+        final boolean reset;
+        synchronized (this) {
+            entityChanges = entities.computeIfAbsent(entity, k -> new EntityChanges(historySize));
+            reset = after != null && (after < epoch || after > sequence || after < entityChanges.evicted);
+            afterSequence = after == null || reset ? sequence : after;
+        }
+        Flux<TemporalChange> changes = entityChanges.processor
+          .filter(change -> change.getSequence() > afterSequence);
+        if (reset) {
+            log.debug("Resetting a subscriber to the {} changes after {} at {}", entity, after, afterSequence);
+            changes = changes.startWith(TemporalChange.reset(afterSequence, entity));
+        }
+        if (disconnectSlowSubscribers) {
+            return changes.onBackpressureBuffer(subscriberBufferSize);
+        }
+        return changes.onBackpressureBuffer(
+          subscriberBufferSize,
+          dropped -> log.debug("Dropped change {} for a slow subscriber", dropped),
+          BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    /**
+     * Gets the sequence number of the last change that was published.
+     *
+     * @return sequence number
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Publishes changes.  The sequence numbers are assigned here so they are in the order the changes are emitted.
+     *
+     * @param changes changes, the sequence numbers are ignored.
+     */
+    private synchronized void publish(final List<TemporalChange> changes) {
+        for (final TemporalChange change : changes) {
+            entities.computeIfAbsent(change.getEntity(), k -> new EntityChanges(historySize))
+              .publish(new TemporalChange(
+                ++sequence,
+                change.getEntity(),
+                change.getKey(),
+                change.getEffectiveOn(),
+                change.getId(),
+                change.getSupersededId()));
+        }
+    }
+
+    /**
+     * Publishes changes once the current transaction commits.  Nothing is published if it rolls back.
+     *
+     * @param changes changes, the sequence numbers are ignored.
+     */
+    void publishAfterCommit(final List<TemporalChange> changes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(changes);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+            @Override
+            public void afterCommit() {
+                publish(changes);
+            }
+        });
+    }
+
+    /**
+     * Buffered changes of an entity class, guarded by the feed.
+     */
+    private static final class EntityChanges {
+
+        /**
+         * Sequence numbers of the buffered changes, as a ring.
+         */
+        private final long[] buffered;
+
+        /**
+         * Sequence number of the last change that is no longer buffered, {@code 0} if none.
+         */
+        private long evicted;
+
+        private final ReplayProcessor<TemporalChange> processor;
+
+        /**
+         * Number of changes published.
+         */
+        private long published;
+
+        private final FluxSink<TemporalChange> sink;
+
+        EntityChanges(final int historySize) {
+
+            buffered = new long[historySize];
+            processor = ReplayProcessor.create(historySize);
+            sink = processor.sink();
+        }
+
+        void publish(final TemporalChange change) {
+
+            final int slot = (int) (published % buffered.length);
+            if (published >= buffered.length) {
+                evicted = buffered[slot];
+            }
+            buffered[slot] = change.getSequence();
+            ++published;
+            sink.next(change);
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package net.trajano.temporal.domain;
+
+import lombok.Getter;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Native SQL for the current view of a temporal entity class.  The current view is a table with a row per key that
+ * points at the version that is effective now, or if there is none the next version that will be.  The row also has
+ * the time when it must be evaluated again, which is the effective until of the version that is effective now or the
+ * effective on of the next version.  This is native SQL as the table is not mapped.
+ */
+@Getter
+final class TemporalCurrentView {
+
+    static final String PARAM_NOW = "now";
+
+    /**
+     * Current view table.
+     */
+    private final String currentTable;
+
+    /**
+     * Creates the current view table with the key, id and effective until columns of the entity table, its primary key
+     * and the index used to find the rows that need to be evaluated again.
+     */
+    private final List<String> createCurrentTable;
+
+    /**
+     * Deletes the row of a key.  This has a positional parameter for the key as it is used in a JDBC batch.
+     */
+    private final String deleteKey;
+
+    /**
+     * Finds the keys whose rows need to be evaluated again.
+     */
+    private final String findDueKeys;
+
+    /**
+     * Finds the id of the version the row of a key points at if the row does not need to be evaluated again.
+     */
+    private final String findVersionId;
+
+    /**
+     * Inserts the row of a key.  This has positional parameters for the key, version id and the time the row must be
+     * evaluated again as it is used in a JDBC batch.
+     */
+    private final String insertKey;
+
+    /**
+     * Key column of the entity table and the current view table.
+     */
+    private final String keyColumn;
+
+    /**
+     * @param persister entity persister
+     * @param currentTableSuffix appended to the entity table name for the current view table
+     */
+    TemporalCurrentView(
+      final AbstractEntityPersister persister,
+      final String currentTableSuffix) {
+
+        final String liveTable = persister.getTableName();
+        currentTable = liveTable + currentTableSuffix;
+        keyColumn = persister.getPropertyColumnNames("key")[0];
+        final String idColumn = persister.getIdentifierColumnNames()[0];
+        final String effectiveUntilColumn = persister.getPropertyColumnNames("effectiveUntil")[0];
+
+        createCurrentTable = Arrays.asList(
+          "create table " + currentTable + " as (select e." + keyColumn
+            + ", e." + idColumn + " as version_id"
+            + ", e." + effectiveUntilColumn + " as changes_at"
+            + " from " + liveTable + " e) with no data",
+          "alter table " + currentTable + " add primary key (" + keyColumn + ")",
+          "create index " + currentTable + "_changes_at on " + currentTable + " (changes_at)");
+        deleteKey = "delete from " + currentTable + " where " + keyColumn + " = ?";
+        insertKey = "insert into " + currentTable + " (" + keyColumn + ", version_id, changes_at) values (?, ?, ?)";
+        findVersionId = "select c.version_id from " + currentTable + " c"
+          + " where c." + keyColumn + " = :key"
+          + " and (c.changes_at is null or c.changes_at > :now)";
+        findDueKeys = "select c." + keyColumn + " from " + currentTable + " c"
+          + " where c.changes_at <= :now";
+    }
+
+}
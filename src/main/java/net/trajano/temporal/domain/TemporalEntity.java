@@ -3,10 +3,12 @@ package net.trajano.temporal.domain;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.temporal.Temporal;
 import java.util.UUID;
 
@@ -32,10 +34,35 @@ public abstract class TemporalEntity<S extends Serializable, T extends Temporal
     private T effectiveOn;
 
     /**
-     * Primary key for the table.  This is not expected to be used directly.
+     * Effective until (exclusive).  This is the effective on of the next version of the key or {@code null} if there
+     * is no later version.  This is maintained by the repository when saving.
+     */
+    @Column
+    @Setter(AccessLevel.PACKAGE)
+    private T effectiveUntil;
+
+    /**
+     * When the version was last written, either when it was saved or when it was superseded or its effective until
+     * changed.  This is maintained by the repository and together with the id is the cursor for finding changes.
+     */
+    @Column(
+      nullable = false
+    )
+    @Setter(AccessLevel.PACKAGE)
+    private Instant recordedAt;
+
+    /**
+     * Primary key for the table.  This is not expected to be used directly.  It is generated by {@link
+     * TemporalIdGenerator} and is time ordered by default.
      */
     @Id
-    @GeneratedValue
+    @GeneratedValue(
+      generator = TemporalIdGenerator.NAME
+    )
+    @GenericGenerator(
+      name = TemporalIdGenerator.NAME,
+      strategy = "net.trajano.temporal.domain.TemporalIdGenerator"
+    )
     @Column(
       length = 16
     )
@@ -67,6 +94,32 @@ public abstract class TemporalEntity<S extends Serializable, T extends Temporal
 
     public abstract void setKey(S key);
 
+    /**
+     * Builds a tag that changes whenever the representation of a version changes.  The only attribute of a version
+     * that is modified once it is saved and can be seen by a lookup is effective until so the tag is built from that
+     * and the id.
+     *
+     * @param id version id
+     * @param effectiveUntil effective until of the version
+     * @return version tag
+     */
+    public static String versionTag(
+      final UUID id,
+      final Temporal effectiveUntil) {
+
+        return effectiveUntil == null ? id.toString() : id + "-" + effectiveUntil;
+    }
+
+    /**
+     * Sets when the version was recorded if it is persisted without using the repository.
+     */
+    @PrePersist
+    void prePersist() {
+        if (recordedAt == null) {
+            recordedAt = Instant.now();
+        }
+    }
+
     /**
      * Ensure that the generated ID is used.
      */
@@ -74,4 +127,13 @@ public abstract class TemporalEntity<S extends Serializable, T extends Temporal
         id = null;
     }
 
+    /**
+     * Sets the ID when the version is not saved through JPA.
+     *
+     * @param id generated ID
+     */
+    void assignId(final UUID id) {
+        this.id = id;
+    }
+
 }
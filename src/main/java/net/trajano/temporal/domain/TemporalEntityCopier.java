@@ -0,0 +1,66 @@
+package net.trajano.temporal.domain;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copies the entities of a temporal entity class field by field.  Maps and collections are copied so the copy does not
+ * change when the original does, and a copy of a managed entity does not hold on to its persistent collections.
+ *
+ * @param <O> temporal entity type
+ */
+final class TemporalEntityCopier<O> {
+
+    private final Class<O> entityClass;
+
+    /**
+     * Fields that are copied.
+     */
+    private final List<Field> fields = new ArrayList<>();
+
+    /**
+     * @param entityClass entity class
+     */
+    TemporalEntityCopier(final Class<O> entityClass) {
+
+        this.entityClass = entityClass;
+        ReflectionUtils.doWithFields(entityClass, field -> {
+            ReflectionUtils.makeAccessible(field);
+            fields.add(field);
+        }, ReflectionUtils.COPYABLE_FIELDS);
+    }
+
+    /**
+     * Copies an entity.
+     *
+     * @param entity entity
+     * @return copy
+     */
+    O copy(final O entity) {
+
+        final O copy = BeanUtils.instantiateClass(entityClass);
+        for (final Field field : fields) {
+            final Object value = ReflectionUtils.getField(field, entity);
+            if (value instanceof Map) {
+                ReflectionUtils.setField(field, copy, new LinkedHashMap<>((Map<?, ?>) value));
+            } else if (value instanceof Set) {
+                ReflectionUtils.setField(field, copy, new LinkedHashSet<>((Set<?>) value));
+            } else if (value instanceof Collection) {
+                ReflectionUtils.setField(field, copy, new ArrayList<>((Collection<?>) value));
+            } else {
+                ReflectionUtils.setField(field, copy, value);
+            }
+        }
+        return copy;
+    }
+
+}
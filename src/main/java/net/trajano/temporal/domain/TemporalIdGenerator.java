@@ -0,0 +1,74 @@
+package net.trajano.temporal.domain;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Generates the IDs for temporal entities.  The IDs are time ordered by default so new rows are appended to the end of
+ * the primary key and {@code supersededBy} indices rather than being inserted at random positions.
+ * <p>
+ * The strategy is chosen by the {@value #STRATEGY} generator parameter, falling back to the {@value #STRATEGY_SETTING}
+ * Hibernate setting (e.g. {@code spring.jpa.properties.temporal.id_generator}).  The supported values are {@value
+ * #TIME_ORDERED} and {@value #RANDOM}.
+ */
+public class TemporalIdGenerator implements
+  IdentifierGenerator,
+  Configurable {
+
+    /**
+     * Name of the generator as referenced by {@link javax.persistence.GeneratedValue#generator()}.
+     */
+    public static final String NAME = "temporal-id";
+
+    public static final String RANDOM = "random";
+
+    public static final String STRATEGY = "strategy";
+
+    public static final String STRATEGY_SETTING = "temporal.id_generator";
+
+    public static final String TIME_ORDERED = "time-ordered";
+
+    private boolean timeOrdered = true;
+
+    @Override
+    public void configure(
+      final Type type,
+      final Properties params,
+      final ServiceRegistry serviceRegistry) {
+
+        final String defaultStrategy = ConfigurationHelper.getString(
+          STRATEGY_SETTING,
+          serviceRegistry.getService(ConfigurationService.class).getSettings(),
+          TIME_ORDERED);
+        final String strategy = params.getProperty(STRATEGY, defaultStrategy);
+        if (TIME_ORDERED.equals(strategy)) {
+            timeOrdered = true;
+        } else if (RANDOM.equals(strategy)) {
+            timeOrdered = false;
+        } else {
+            throw new MappingException(String.format("Unsupported %s strategy %s for %s",
+              NAME,
+              strategy,
+              params.getProperty(PersistentIdentifierGenerator.ENTITY_NAME)));
+        }
+    }
+
+    @Override
+    public Serializable generate(
+      final SharedSessionContractImplementor session,
+      final Object object) {
+        return timeOrdered ? TimeOrderedUuid.next() : UUID.randomUUID();
+    }
+
+}
@@ -0,0 +1,84 @@
+package net.trajano.temporal.domain;
+
+import lombok.Getter;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
+import java.time.temporal.Temporal;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Metadata of a temporal entity class.  This is built once at startup by {@link TemporalMetadataRegistry} so the
+ * repository operations do not resolve anything from the metamodel when they are called.
+ */
+@Getter
+final class TemporalMetadata {
+
+    /**
+     * Names of the attributes that can be selected in a projection.
+     */
+    private final Set<String> attributeNames;
+
+    /**
+     * Gets the current time as the temporal type of the entity, {@code null} if the type has no current time.
+     */
+    private final Supplier<Temporal> clock;
+
+    /**
+     * Copies the entities, used to keep unmanaged copies of them.
+     */
+    private final TemporalEntityCopier<?> copier;
+
+    /**
+     * Current view, {@code null} if it is not enabled.
+     */
+    private final TemporalCurrentView currentView;
+
+    /**
+     * Name of the map attribute whose entries can be selected in a projection, {@code null} if there is none.
+     */
+    private final String entriesAttribute;
+
+    /**
+     * {@code true} if the entries attribute is a collection table rather than a column.
+     */
+    private final boolean entriesCollection;
+
+    /**
+     * Meters.
+     */
+    private final TemporalMetrics metrics;
+
+    /**
+     * Entity persister.
+     */
+    private final AbstractEntityPersister persister;
+
+    /**
+     * JPQL queries.
+     */
+    private final TemporalQueries queries;
+
+    TemporalMetadata(
+      final Set<String> attributeNames,
+      final String entriesAttribute,
+      final boolean entriesCollection,
+      final Supplier<Temporal> clock,
+      final TemporalEntityCopier<?> copier,
+      final TemporalCurrentView currentView,
+      final AbstractEntityPersister persister,
+      final TemporalQueries queries,
+      final TemporalMetrics metrics) {
+
+        this.attributeNames = attributeNames;
+        this.entriesAttribute = entriesAttribute;
+        this.entriesCollection = entriesCollection;
+        this.clock = clock;
+        this.copier = copier;
+        this.currentView = currentView;
+        this.persister = persister;
+        this.queries = queries;
+        this.metrics = metrics;
+    }
+
+}
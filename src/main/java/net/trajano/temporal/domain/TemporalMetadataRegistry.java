@@ -0,0 +1,174 @@
+package net.trajano.temporal.domain;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.core.ResolvableType;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.PluralAttribute;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Metadata of all the temporal entity classes.  The entity classes are found in the JPA metamodel when the registry is
+ * built so an entity that is not mapped as expected fails at startup rather than on its first request.  Lookups go
+ * through a {@link ClassValue} which is read without locking once the value for a class is computed.
+ */
+final class TemporalMetadataRegistry {
+
+    /**
+     * Gets the current time for each of the temporal types that have one.
+     */
+    private static final Map<Class<?>, Supplier<Temporal>> CLOCKS;
+
+    static {
+        final Map<Class<?>, Supplier<Temporal>> clocks = new HashMap<>();
+        clocks.put(Instant.class, Instant::now);
+        clocks.put(LocalDate.class, LocalDate::now);
+        clocks.put(LocalDateTime.class, LocalDateTime::now);
+        clocks.put(OffsetDateTime.class, OffsetDateTime::now);
+        clocks.put(ZonedDateTime.class, ZonedDateTime::now);
+        CLOCKS = Collections.unmodifiableMap(clocks);
+    }
+
+    /**
+     * Metadata by entity class, this is not modified after it is built.
+     */
+    private final Map<Class<?>, TemporalMetadata> entities;
+
+    private final ClassValue<TemporalMetadata> metadata = new ClassValue<TemporalMetadata>() {
+
+        @Override
+        protected TemporalMetadata computeValue(final Class<?> type) {
+
+            final TemporalMetadata m = entities.get(type);
+            if (m == null) {
+                throw new IllegalArgumentException(String.format("%s is not a temporal entity", type.getName()));
+            }
+            return m;
+        }
+    };
+
+    /**
+     * @param emf entity manager factory
+     * @param meterRegistry meter registry
+     * @param metricsDisabledEntities entity names that metrics are not recorded for
+     * @param currentViewTableSuffix appended to the entity table names for the current view tables, {@code null} if the
+     * current view is not enabled
+     */
+    TemporalMetadataRegistry(
+      final EntityManagerFactory emf,
+      final MeterRegistry meterRegistry,
+      final Set<String> metricsDisabledEntities,
+      final String currentViewTableSuffix) {
+
+        final MetamodelImplementor metamodel = emf.unwrap(SessionFactoryImplementor.class).getMetamodel();
+        final Map<Class<?>, TemporalMetadata> m = new HashMap<>();
+        for (final EntityType<?> entityType : metamodel.getEntities()) {
+            final Class<?> type = entityType.getJavaType();
+            if (type != null && TemporalEntity.class.isAssignableFrom(type) && !Modifier.isAbstract(type.getModifiers())) {
+                m.put(type, build(entityType, metamodel, meterRegistry, metricsDisabledEntities, currentViewTableSuffix));
+            }
+        }
+        entities = Collections.unmodifiableMap(m);
+    }
+
+    private static TemporalMetadata build(
+      final EntityType<?> entityType,
+      final MetamodelImplementor metamodel,
+      final MeterRegistry meterRegistry,
+      final Set<String> metricsDisabledEntities,
+      final String currentViewTableSuffix) {
+
+        final Class<?> type = entityType.getJavaType();
+        final ResolvableType temporalEntityType = ResolvableType.forClass(type).as(TemporalEntity.class);
+        final Class<?> keyType = temporalEntityType.resolveGeneric(0);
+        final Class<?> temporalType = temporalEntityType.resolveGeneric(1);
+        if (keyType == null || temporalType == null) {
+            throw new IllegalStateException(String.format("%s must specify the key and temporal types of %s", type.getName(), TemporalEntity.class.getSimpleName()));
+        }
+
+        final Attribute<?, ?> keyAttribute;
+        try {
+            keyAttribute = entityType.getAttribute("key");
+        } catch (final IllegalArgumentException e) {
+            throw new IllegalStateException(String.format("%s must map a key attribute", type.getName()), e);
+        }
+        if (!keyType.equals(keyAttribute.getJavaType())) {
+            throw new IllegalStateException(String.format("%s key attribute is a %s, expected %s", type.getName(), keyAttribute.getJavaType().getName(), keyType.getName()));
+        }
+
+        final EntityPersister persister = metamodel.entityPersister(type);
+        if (!(persister instanceof AbstractEntityPersister)) {
+            throw new IllegalStateException(String.format("%s is not mapped to a table", type.getName()));
+        }
+
+        final List<String> eagerCollections = new ArrayList<>();
+        for (final PluralAttribute<?, ?, ?> attribute : entityType.getPluralAttributes()) {
+            if (!metamodel.collectionPersister(type.getName() + "." + attribute.getName()).isLazy()) {
+                eagerCollections.add(attribute.getName());
+            }
+        }
+
+        final Supplier<Temporal> clock = CLOCKS.get(temporalType);
+        if (currentViewTableSuffix != null && clock == null) {
+            throw new IllegalStateException(String.format("%s cannot have a current view as there is no current time for %s", type.getName(), temporalType.getName()));
+        }
+
+        final Set<String> attributeNames = new HashSet<>();
+        final List<Attribute<?, ?>> mapAttributes = new ArrayList<>();
+        for (final Attribute<?, ?> attribute : entityType.getAttributes()) {
+            if (Map.class.isAssignableFrom(attribute.getJavaType())) {
+                mapAttributes.add(attribute);
+            } else if (!attribute.isCollection()) {
+                attributeNames.add(attribute.getName());
+            }
+        }
+        final Attribute<?, ?> entriesAttribute = mapAttributes.size() == 1 ? mapAttributes.get(0) : null;
+
+        final String entityName = entityType.getName();
+        return new TemporalMetadata(
+          Collections.unmodifiableSet(attributeNames),
+          entriesAttribute == null ? null : entriesAttribute.getName(),
+          entriesAttribute != null && entriesAttribute.isCollection(),
+          clock,
+          new TemporalEntityCopier<>(type),
+          currentViewTableSuffix == null ? null : new TemporalCurrentView((AbstractEntityPersister) persister, currentViewTableSuffix),
+          (AbstractEntityPersister) persister,
+          new TemporalQueries(entityName, eagerCollections),
+          new TemporalMetrics(meterRegistry, entityName, !metricsDisabledEntities.contains(entityName)));
+    }
+
+    /**
+     * @return the temporal entity classes
+     */
+    Set<Class<?>> getEntityClasses() {
+
+        return entities.keySet();
+    }
+
+    /**
+     * Gets the metadata of a temporal entity class.
+     *
+     * @param type temporal entity class
+     * @return metadata
+     * @throws IllegalArgumentException if the class is not a temporal entity
+     */
+    TemporalMetadata get(final Class<?> type) {
+
+        return metadata.get(type);
+    }
+
+}
@@ -0,0 +1,138 @@
+package net.trajano.temporal.domain;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the repository operations on a temporal entity class tagged with the entity name.  The meters are created
+ * once per entity class so recording only needs {@link System#nanoTime()} and does not allocate.  When metrics are
+ * disabled for the entity the meters are no-op meters.
+ */
+@Getter
+final class TemporalMetrics {
+
+    static final String ENTITY_TAG = "entity";
+
+    /**
+     * A composite registry without any registries creates no-op meters.
+     */
+    private static final MeterRegistry NOOP_REGISTRY = new CompositeMeterRegistry();
+
+    /**
+     * Time to find a version of a key.
+     */
+    private final Timer find;
+
+    /**
+     * Number of lookups that found a version.
+     */
+    private final Counter findHits;
+
+    /**
+     * Number of lookups that did not find a version.
+     */
+    private final Counter findMisses;
+
+    /**
+     * Time to find the versions of multiple keys.
+     */
+    private final Timer findKeys;
+
+    /**
+     * Time to save a version.
+     */
+    private final Timer save;
+
+    /**
+     * Time to flush a chunk of a bulk save.
+     */
+    private final Timer saveFlush;
+
+    /**
+     * Time to look up the existing version when saving.
+     */
+    private final Timer saveLookup;
+
+    /**
+     * Time to update the existing version when saving.
+     */
+    private final Timer saveUpdate;
+
+    /**
+     * Number of versions that were superseded by a save.
+     */
+    private final Counter supersedes;
+
+    /**
+     * Number of versions of a key that are not superseded.  This is recorded when all the versions of a key are loaded.
+     */
+    private final DistributionSummary versionsPerKey;
+
+    /**
+     * @param registry meter registry
+     * @param entityName entity name
+     * @param enabled {@code false} to create no-op meters
+     */
+    TemporalMetrics(
+      final MeterRegistry registry,
+      final String entityName,
+      final boolean enabled) {
+
+        final MeterRegistry r = enabled ? registry : NOOP_REGISTRY;
+        find = timer(r, "temporal.find", entityName, "Time to find the version of a key at a given time");
+        findHits = Counter.builder("temporal.find.results")
+          .tag(ENTITY_TAG, entityName)
+          .tag("result", "hit")
+          .description("Number of lookups by result")
+          .register(r);
+        findMisses = Counter.builder("temporal.find.results")
+          .tag(ENTITY_TAG, entityName)
+          .tag("result", "miss")
+          .description("Number of lookups by result")
+          .register(r);
+        findKeys = timer(r, "temporal.find.keys", entityName, "Time to find the versions of multiple keys at a given time");
+        save = timer(r, "temporal.save", entityName, "Time to save a version");
+        saveFlush = timer(r, "temporal.save.flush", entityName, "Time to flush a chunk of a bulk save");
+        saveLookup = timer(r, "temporal.save.lookup", entityName, "Time to look up the existing version when saving");
+        saveUpdate = timer(r, "temporal.save.update", entityName, "Time to update the existing version when saving");
+        supersedes = Counter.builder("temporal.save.supersedes")
+          .tag(ENTITY_TAG, entityName)
+          .description("Number of versions superseded by a save")
+          .register(r);
+        versionsPerKey = DistributionSummary.builder("temporal.versions")
+          .tag(ENTITY_TAG, entityName)
+          .description("Number of versions of a key that are not superseded")
+          .register(r);
+    }
+
+    private static Timer timer(
+      final MeterRegistry registry,
+      final String name,
+      final String entityName,
+      final String description) {
+
+        return Timer.builder(name)
+          .tag(ENTITY_TAG, entityName)
+          .description(description)
+          .register(registry);
+    }
+
+    /**
+     * Records the time elapsed since the start.
+     *
+     * @param timer timer
+     * @param start start time from {@link System#nanoTime()}
+     */
+    static void record(
+      final Timer timer,
+      final long start) {
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+}
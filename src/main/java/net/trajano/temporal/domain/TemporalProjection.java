@@ -0,0 +1,44 @@
+package net.trajano.temporal.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.temporal.Temporal;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Some of the fields of a version of a temporal entity.  This is the result of a projection which only loads the
+ * fields that were requested.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class TemporalProjection {
+
+    /**
+     * Id of the version.
+     */
+    private final UUID id;
+
+    /**
+     * Effective until of the version.
+     */
+    private final Temporal effectiveUntil;
+
+    /**
+     * Requested fields by name.  A requested entry that the version does not have is not present.
+     */
+    private final Map<String, Object> fields;
+
+    /**
+     * @return version tag of the version
+     * @see TemporalEntity#versionTag(UUID, Temporal)
+     */
+    public String getVersionTag() {
+
+        return TemporalEntity.versionTag(id, effectiveUntil);
+    }
+
+}
@@ -0,0 +1,274 @@
+package net.trajano.temporal.domain;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collection;
+
+/**
+ * JPQL queries for a temporal entity class.  These are built once per entity class rather than building a criteria
+ * tree on every call.  As the query strings are constant Hibernate's query plan cache avoids translating them again.
+ */
+@Getter
+final class TemporalQueries {
+
+    static final String PARAM_AFTER_ID = "afterId";
+
+    static final String PARAM_AT = "at";
+
+    static final String PARAM_EFFECTIVE_UNTIL = "effectiveUntil";
+
+    static final String PARAM_ENTRIES = "entries";
+
+    static final String PARAM_FROM = "from";
+
+    static final String PARAM_ID = "id";
+
+    static final String PARAM_KEY = "key";
+
+    static final String PARAM_KEYS = "keys";
+
+    static final String PARAM_RECORDED_AT = "recordedAt";
+
+    static final String PARAM_SINCE = "since";
+
+    static final String PARAM_SUPERSEDED_BY = "supersededBy";
+
+    static final String PARAM_TO = "to";
+
+    static final String PARAM_UNTIL = "until";
+
+    /**
+     * Finds the version of a key for a given time.  This is a range predicate on effective on and effective until.
+     */
+    private final String findByKeyAt;
+
+    /**
+     * Finds the versions of multiple keys for a given time.
+     */
+    private final String findByKeysAt;
+
+    /**
+     * Finds the id and effective until of the version of a key for a given time.  This does not load the entity.
+     */
+    private final String findVersionTagAt;
+
+    /**
+     * Finds the id, effective on and effective until of the version of a key for a given time, or the next version if
+     * there is none at that time, as the first result.  This does not load the entity.
+     */
+    private final String findVersionAtOrNext;
+
+    /**
+     * Selects the ids of versions that have been superseded.
+     */
+    private final String findSupersededIds;
+
+    /**
+     * Selects the ids of the versions of multiple keys.  This is used to lock the versions.
+     */
+    private final String lockKeys;
+
+    /**
+     * Sets the superseded by of a single version.
+     */
+    private final String updateSupersededBy;
+
+    /**
+     * Sets the effective until of a single version.
+     */
+    private final String updateEffectiveUntilById;
+
+    /**
+     * Sets the effective until of all versions that are not superseded to the effective on of the next version.  This
+     * is used to populate effective until on data that was created before it was maintained.
+     */
+    private final String updateEffectiveUntil;
+
+    /**
+     * Finds all the versions of a key ordered by effective on.
+     */
+    private final String findTimeline;
+
+    /**
+     * Finds all the versions of multiple keys.
+     */
+    private final String findByKeys;
+
+    /**
+     * Finds the version of every key for a given time ordered by key.
+     */
+    private final String findSnapshotAt;
+
+    /**
+     * Base of the history queries, the remaining conditions are added by {@link #getFindHistory(boolean, boolean,
+     * boolean)}.
+     */
+    @Getter(AccessLevel.NONE)
+    private final String findHistory;
+
+    /**
+     * Base of the changed queries, the remaining conditions are added by {@link #getFindChanged(boolean, boolean)}.
+     */
+    @Getter(AccessLevel.NONE)
+    private final String findChanged;
+
+    /**
+     * JPA entity name, this is used to build the projection queries.
+     */
+    @Getter(AccessLevel.NONE)
+    private final String entityName;
+
+    /**
+     * The queries that load entities for lookups fetch the eager collections in the same statement rather than issuing
+     * a select per entity.  Streaming queries do not as a fetch join cannot be used with a scrolling cursor.
+     *
+     * @param entityName JPA entity name
+     * @param eagerCollections names of the collection attributes that are fetched eagerly
+     */
+    TemporalQueries(
+      final String entityName,
+      final Collection<String> eagerCollections) {
+
+        this.entityName = entityName;
+        final StringBuilder fetchJoins = new StringBuilder();
+        for (final String eagerCollection : eagerCollections) {
+            fetchJoins.append(" left join fetch e.").append(eagerCollection);
+        }
+        findByKeyAt = "select e from " + entityName + " e" + fetchJoins
+          + " where e.key = :key"
+          + " and e.supersededBy = :supersededBy"
+          + " and e.effectiveOn <= :at"
+          + " and (e.effectiveUntil is null or e.effectiveUntil > :at)";
+        findByKeysAt = "select e from " + entityName + " e" + fetchJoins
+          + " where e.key in :keys"
+          + " and e.supersededBy = :supersededBy"
+          + " and e.effectiveOn <= :at"
+          + " and (e.effectiveUntil is null or e.effectiveUntil > :at)";
+        findVersionTagAt = "select e.id, e.effectiveUntil from " + entityName + " e"
+          + " where e.key = :key"
+          + " and e.supersededBy = :supersededBy"
+          + " and e.effectiveOn <= :at"
+          + " and (e.effectiveUntil is null or e.effectiveUntil > :at)";
+        findVersionAtOrNext = "select e.id, e.effectiveOn, e.effectiveUntil from " + entityName + " e"
+          + " where e.key = :key"
+          + " and e.supersededBy = :supersededBy"
+          + " and (e.effectiveUntil is null or e.effectiveUntil > :at)"
+          + " order by e.effectiveOn";
+        findSupersededIds = "select e.id from " + entityName + " e"
+          + " where e.supersededBy <> :supersededBy";
+        lockKeys = "select e.id from " + entityName + " e"
+          + " where e.key in :keys"
+          + " and e.supersededBy = :supersededBy";
+        updateSupersededBy = "update " + entityName + " e"
+          + " set e.supersededBy = :supersededBy, e.recordedAt = :recordedAt"
+          + " where e.id = :id";
+        updateEffectiveUntilById = "update " + entityName + " e"
+          + " set e.effectiveUntil = :effectiveUntil, e.recordedAt = :recordedAt"
+          + " where e.id = :id";
+        updateEffectiveUntil = "update " + entityName + " e"
+          + " set e.recordedAt = :recordedAt, e.effectiveUntil = ("
+          + "select min(n.effectiveOn) from " + entityName + " n"
+          + " where n.key = e.key"
+          + " and n.supersededBy = :supersededBy"
+          + " and n.effectiveOn > e.effectiveOn)"
+          + " where e.supersededBy = :supersededBy";
+        findTimeline = "select e from " + entityName + " e" + fetchJoins
+          + " where e.key = :key"
+          + " and e.supersededBy = :supersededBy"
+          + " order by e.effectiveOn";
+        findByKeys = "select e from " + entityName + " e" + fetchJoins
+          + " where e.key in :keys"
+          + " and e.supersededBy = :supersededBy";
+        findSnapshotAt = "select e from " + entityName + " e"
+          + " where e.supersededBy = :supersededBy"
+          + " and e.effectiveOn <= :at"
+          + " and (e.effectiveUntil is null or e.effectiveUntil > :at)"
+          + " order by e.key";
+        findHistory = "select e from " + entityName + " e"
+          + " where e.key = :key";
+        findChanged = "select e from " + entityName + " e"
+          + " where e.recordedAt < :until";
+    }
+
+    /**
+     * Finds the id, effective until and some attributes of the version of a key for a given time.  If there is an
+     * entries collection it is joined on the entries whose keys are bound to the {@code entries} parameter and the key
+     * and value of the entry are selected last, so there is a row for each entry that is found.
+     *
+     * @param attributes names of the attributes to select
+     * @param entriesCollection name of the map collection to select entries from, {@code null} if none are selected
+     * @return query
+     */
+    String getFindFieldsAt(
+      final Collection<String> attributes,
+      final String entriesCollection) {
+
+        final StringBuilder b = new StringBuilder("select e.id, e.effectiveUntil");
+        for (final String attribute : attributes) {
+            b.append(", e.").append(attribute);
+        }
+        if (entriesCollection != null) {
+            b.append(", key(a), value(a) from ").append(entityName).append(" e")
+              .append(" left join e.").append(entriesCollection).append(" a on key(a) in :entries");
+        } else {
+            b.append(" from ").append(entityName).append(" e");
+        }
+        return b.append(" where e.key = :key")
+          .append(" and e.supersededBy = :supersededBy")
+          .append(" and e.effectiveOn <= :at")
+          .append(" and (e.effectiveUntil is null or e.effectiveUntil > :at)")
+          .toString();
+    }
+
+    /**
+     * Finds the versions that were recorded before until and after a cursor ordered by recorded at and id.  The
+     * cursor is the recorded at and id of the last version that was previously read.  If there is no id then the
+     * versions recorded at since are included.
+     *
+     * @param hasSince {@code true} if the {@code since} parameter is bound
+     * @param hasAfterId {@code true} if the {@code afterId} parameter is bound, this requires {@code since}
+     * @return query
+     */
+    String getFindChanged(
+      final boolean hasSince,
+      final boolean hasAfterId) {
+
+        final StringBuilder b = new StringBuilder(findChanged);
+        if (hasAfterId) {
+            b.append(" and (e.recordedAt > :since or (e.recordedAt = :since and e.id > :afterId))");
+        } else if (hasSince) {
+            b.append(" and e.recordedAt >= :since");
+        }
+        return b.append(" order by e.recordedAt, e.id").toString();
+    }
+
+    /**
+     * Finds the versions of a key that are effective at any time between from (inclusive) and to (exclusive) ordered by
+     * effective on.  There are only a fixed number of variations so the query plan cache still applies.
+     *
+     * @param hasFrom {@code true} if the {@code from} parameter is bound
+     * @param hasTo {@code true} if the {@code to} parameter is bound
+     * @param includeSuperseded {@code true} to include versions that have been superseded, otherwise the {@code
+     * supersededBy} parameter is bound
+     * @return query
+     */
+    String getFindHistory(
+      final boolean hasFrom,
+      final boolean hasTo,
+      final boolean includeSuperseded) {
+
+        final StringBuilder b = new StringBuilder(findHistory);
+        if (!includeSuperseded) {
+            b.append(" and e.supersededBy = :supersededBy");
+        }
+        if (hasFrom) {
+            b.append(" and (e.effectiveUntil is null or e.effectiveUntil > :from)");
+        }
+        if (hasTo) {
+            b.append(" and e.effectiveOn < :to");
+        }
+        return b.append(" order by e.effectiveOn").toString();
+    }
+
+}
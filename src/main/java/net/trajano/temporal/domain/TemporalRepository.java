@@ -3,9 +3,14 @@ package net.trajano.temporal.domain;
 import org.springframework.data.repository.Repository;
 
 import java.io.Serializable;
+import java.time.Instant;
 import java.time.temporal.Temporal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 /**
  * @param <S> type for the key
@@ -32,6 +37,72 @@ public interface TemporalRepository<
       final T at,
       final Class<O> resultType);
 
+    /**
+     * Finds the temporal entity that is effective now.  If the current view is enabled this reads the row of the key in
+     * the current view table and loads the version by its id, otherwise or if the row is due to be rolled forward this
+     * is the same as {@link #findByKeyAt(Serializable, Temporal, Class)} with the current time.
+     *
+     * @param key key
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return temporal entity
+     * @throws IllegalArgumentException if there is no current time for the temporal type
+     */
+    Optional<O> findCurrentByKey(
+      final S key,
+      final Class<O> resultType);
+
+    /**
+     * Finds the temporal entities for a given time for multiple keys.  This resolves all the keys using as few queries
+     * as possible rather than one query per key.  Keys that do not have a temporal entity at the given time are not
+     * present in the resulting map.
+     *
+     * @param keys keys
+     * @param at at which time
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return temporal entities mapped by key in the iteration order of the keys.
+     */
+    Map<S, O> findByKeysAt(
+      final Collection<S> keys,
+      final T at,
+      final Class<O> resultType);
+
+    /**
+     * Finds the version tag of the temporal entity for a given time without loading the entity.  This is used to check
+     * if a representation that was previously retrieved is still current.
+     *
+     * @param key key
+     * @param at at which time
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return version tag
+     * @see TemporalEntity#versionTag(UUID, Temporal)
+     */
+    Optional<String> findVersionTagAt(
+      final S key,
+      final T at,
+      final Class<O> resultType);
+
+    /**
+     * Finds some of the fields of the temporal entity for a given time.  Only the columns of the fields are selected and
+     * the entity is not loaded.  A field is either an attribute of the entity or, if it is not, an entry of its map
+     * attribute such as the additional attributes.
+     *
+     * @param key key
+     * @param at at which time
+     * @param fields names of the fields
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return the fields of the version
+     * @throws IllegalArgumentException if a field is not an attribute and the entity does not have a map attribute
+     */
+    Optional<TemporalProjection> findFieldsByKeyAt(
+      final S key,
+      final T at,
+      final Collection<String> fields,
+      final Class<O> resultType);
+
     /**
      * Saves the temporal with the key data overridden in the object.  Note this modifies the data in object.  It is
      * expected that the object is not managed.
@@ -68,4 +139,108 @@ public interface TemporalRepository<
      */
     O saveTemporal(final O object);
 
+    /**
+     * Saves multiple temporal objects in bulk.  This is intended for imports where a large number of objects are saved
+     * in a single transaction.  The existing objects for the keys are looked up in bulk and the changes are written
+     * using JDBC batching rather than flushing per object.  Objects with the same key and effective on are treated as
+     * if they were saved one after the other in iteration order.  It is expected that the objects are not managed and
+     * they are not managed after the call.
+     *
+     * @param objects temporal objects to save.
+     * @return saved objects in iteration order.
+     */
+    List<O> saveAllTemporal(final Iterable<O> objects);
+
+    /**
+     * Recalculates the effective until of all the versions that are not superseded from the effective on of the next
+     * version of the key.  This is used to migrate data that was saved before effective until was maintained and must
+     * be run before the data is read.
+     *
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return number of versions updated
+     */
+    int backfillEffectiveUntil(final Class<O> resultType);
+
+    /**
+     * Moves the versions that have been superseded to the history table.  The versions are moved in batches each in
+     * their own transaction so an interrupted run keeps what it has moved and can simply be run again.  The history
+     * table is created from the entity table if it does not exist.  This is not supported for entities that have
+     * collection tables.
+     *
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return number of versions moved
+     */
+    long archiveSuperseded(final Class<O> resultType);
+
+    /**
+     * Rolls forward the rows of the current view table whose version stopped being effective or whose next version
+     * became effective.  This is scheduled every {@code temporal.current-view.roll-forward-millis} and is done in
+     * batches each in their own transaction.
+     *
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return number of rows rolled forward, {@code 0} if the current view is not enabled
+     */
+    long rollForwardCurrentView(final Class<O> resultType);
+
+    /**
+     * Finds the version history of a key ordered by effective on.  The results are fetched lazily from a dedicated
+     * read only persistence context and each entity is detached once it is read so memory use does not grow with the
+     * number of versions.  The stream holds a database connection and <em>must</em> be closed.
+     *
+     * @param key lookup key
+     * @param from only include versions that are effective on or after this time, {@code null} for no lower bound.
+     * @param to only include versions that are effective before this time, {@code null} for no upper bound.
+     * @param includeSuperseded {@code true} to include versions that were superseded by a correction.  If
+     * {@code temporal.archive.include-in-history} is set then this includes the versions that were moved to the
+     * history table.
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return versions of the key
+     */
+    Stream<O> findHistory(
+      final S key,
+      final T from,
+      final T to,
+      final boolean includeSuperseded,
+      final Class<O> resultType);
+
+    /**
+     * Finds the versions that were saved, superseded or had their effective until changed after a cursor ordered by
+     * {@link TemporalEntity#getRecordedAt() recorded at} and id.  This is used to synchronize a copy of the data by
+     * reading only what changed since it was last synchronized.  The cursor for the next page is the recorded at and
+     * id of the last version returned and there are no more changes when fewer than the limit are returned.  Versions
+     * recorded in the last few seconds are not returned until transactions that were in progress have committed.  The
+     * results are streamed the same way as {@link #findHistory(Serializable, Temporal, Temporal, boolean, Class)} and
+     * the stream <em>must</em> be closed.
+     *
+     * @param since recorded at of the cursor, {@code null} to start from the beginning.
+     * @param afterId id of the cursor, {@code null} to include all the versions recorded at since.
+     * @param limit maximum number of versions
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return versions changed after the cursor
+     */
+    Stream<O> findChanged(
+      final Instant since,
+      final UUID afterId,
+      final int limit,
+      final Class<O> resultType);
+
+    /**
+     * Finds the version of every key for a given time ordered by key.  This is a single set based scan rather than a
+     * lookup per key and is intended for exporting the whole data set.  The results are streamed the same way as
+     * {@link #findHistory(Serializable, Temporal, Temporal, boolean, Class)} and the stream <em>must</em> be closed.
+     *
+     * @param at at which time
+     * @param resultType result type.  This is needed as
+     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
+     * @return version of every key at the given time
+     */
+    Stream<O> findSnapshotAt(
+      final T at,
+      final Class<O> resultType);
+
 }
@@ -1,21 +1,53 @@
 package net.trajano.temporal.domain;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.Type;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.FlushModeType;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
-import javax.persistence.criteria.*;
+import javax.persistence.Query;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
 import java.time.temporal.Temporal;
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
-import java.util.WeakHashMap;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static net.trajano.temporal.domain.TemporalMetrics.record;
+import static net.trajano.temporal.domain.TemporalQueries.*;
 
 @Slf4j
 class TemporalRepositoryImpl<
@@ -35,168 +67,942 @@ class TemporalRepositoryImpl<
      */
     static final UUID NOT_SUPERSEDED = UUID.fromString("00000000-0000-0000-0000-000000000000");
 
-    private static final String FIELD_EFFECTIVE_ON = "effectiveOn";
+    /**
+     * Maximum number of keys that are sent in a single {@code IN} list.  Some databases limit the number of elements
+     * allowed in an {@code IN} list (e.g. Oracle allows 1000).
+     */
+    private static final int KEYS_PER_QUERY = 500;
 
-    private static final String FIELD_KEY = "key";
+    /**
+     * Metadata of the temporal entity classes, this is built when the repository is initialized.
+     */
+    private TemporalMetadataRegistry metadataRegistry;
 
-    private static final String FIELD_SUPERSEDED_BY = "supersededBy";
+    /**
+     * A cache of that maps the the temporal entity class to its archive SQL.  This is not part of the metadata as the
+     * history table is only created when versions are archived.
+     */
+    private final Map<Class<O>, TemporalArchive> archiveMap = new ConcurrentHashMap<>();
+
+    /**
+     * Number of versions moved to the history table per transaction.
+     */
+    @Value("${temporal.archive.batch-size:500}")
+    private int archiveBatchSize;
+
+    /**
+     * Include the history table when finding the history with superseded versions.
+     */
+    @Value("${temporal.archive.include-in-history:false}")
+    private boolean archiveIncludedInHistory;
+
+    /**
+     * Appended to the entity table name for the history table.
+     */
+    @Value("${temporal.archive.table-suffix:_history}")
+    private String archiveTableSuffix;
+
+    /**
+     * Maintain the current view tables.
+     */
+    @Value("${temporal.current-view.enabled:false}")
+    private boolean currentViewEnabled;
+
+    /**
+     * Number of current view rows rolled forward per transaction.
+     */
+    @Value("${temporal.current-view.batch-size:500}")
+    private int currentViewBatchSize;
+
+    /**
+     * Interval between roll forwards of the current view tables, {@code 0} to only roll forward when
+     * {@link #rollForwardCurrentView(Class)} is called.
+     */
+    @Value("${temporal.current-view.roll-forward-millis:60000}")
+    private long currentViewRollForwardMillis;
 
     /**
-     * A cache of that maps the the temporal entity class to its temporal type.
+     * Appended to the entity table name for the current view table.
      */
-    private final Map<Class<O>, Class<T>> temporalTypeMap = new WeakHashMap<>();
+    @Value("${temporal.current-view.table-suffix:_current}")
+    private String currentViewTableSuffix;
+
+    /**
+     * Rolls forward the current view tables, {@code null} if the current view is not enabled.
+     */
+    private ScheduledExecutorService currentViewScheduler;
 
     @Autowired
     private EntityManager em;
 
     /**
-     * Finds the temporal entity for a given time that is not superseded.
-     * This implements a caching mechanism to reduce the time needed to get the temporal type.
+     * Transaction manager.  This is used to archive in multiple transactions.
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Meter registry, if there is none then the global registry is used.
+     */
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Entity names that metrics are not recorded for.
+     */
+    @Value("${temporal.metrics.disabled-entities:}")
+    private Set<String> metricsDisabledEntities;
+
+    /**
+     * Entity manager factory.  This is used to create persistence contexts that are not bound to the transaction for
+     * streaming results.
+     */
+    @Autowired
+    private EntityManagerFactory emf;
+
+    /**
+     * Number of rows fetched from the database at a time when streaming results.
+     */
+    @Value("${temporal.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    /**
+     * Versions recorded within this many milliseconds are not returned by {@link #findChanged(Instant, UUID, int,
+     * Class)} as transactions that started earlier may still commit versions recorded before them.
+     */
+    @Value("${temporal.changed.settle-millis:5000}")
+    private long changedSettleMillis;
+
+    /**
+     * Change feed, the saved versions are not published if there is none.
+     */
+    @Autowired(required = false)
+    private TemporalChangeFeed changeFeed;
+
+    /**
+     * Routes reads to the replica, this is only present if {@code temporal.replica.url} is set.
+     */
+    @Autowired(required = false)
+    private ReplicaRouting replicaRouting;
+
+    /**
+     * Striped write locks for keys, {@code null} if disabled.
+     */
+    private KeyLocks keyLocks;
+
+    /**
+     * Lock the existing versions in the database before saving.  This coordinates writers in different processes.
+     */
+    @Value("${temporal.write-lock.pessimistic:false}")
+    private boolean pessimisticWriteLock;
+
+    /**
+     * Timeline cache, this is only present if {@code temporal.cache.enabled} is set.
+     */
+    @Autowired(required = false)
+    private TimelineCache timelineCache;
+
+    /**
+     * Configures the striped write locks.
+     *
+     * @param enabled {@code false} to disable the locks
+     * @param stripes number of stripes
+     * @param timeoutMillis maximum time to wait for a lock
+     */
+    @Autowired
+    void configureKeyLocks(
+      @Value("${temporal.write-lock.enabled:true}") final boolean enabled,
+      @Value("${temporal.write-lock.stripes:256}") final int stripes,
+      @Value("${temporal.write-lock.timeout-millis:10000}") final long timeoutMillis) {
+
+        keyLocks = enabled ? new KeyLocks(stripes, timeoutMillis) : null;
+    }
+
+    /**
+     * Builds the metadata of the temporal entity classes.  This fails if an entity class is not mapped as expected.  If
+     * the current view is enabled the current view tables that do not exist are created and the roll forward is
+     * scheduled.
+     */
+    @PostConstruct
+    void buildMetadata() {
+
+        metadataRegistry = new TemporalMetadataRegistry(
+          emf,
+          meterRegistry == null ? Metrics.globalRegistry : meterRegistry,
+          metricsDisabledEntities,
+          currentViewEnabled ? currentViewTableSuffix : null);
+        if (!currentViewEnabled) {
+            return;
+        }
+        for (final Class<?> type : metadataRegistry.getEntityClasses()) {
+            final TemporalCurrentView view = metadataRegistry.get(type).getCurrentView();
+            createTableIfMissing(view.getCurrentTable(), view.getCreateCurrentTable());
+        }
+        if (currentViewRollForwardMillis > 0) {
+            currentViewScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "temporal-current-view");
+                thread.setDaemon(true);
+                return thread;
+            });
+            currentViewScheduler.scheduleWithFixedDelay(this::rollForwardCurrentViews, currentViewRollForwardMillis, currentViewRollForwardMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops rolling forward the current view tables.
+     */
+    @PreDestroy
+    void shutdownCurrentView() {
+
+        if (currentViewScheduler != null) {
+            currentViewScheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Rolls forward the current view tables of all the temporal entity classes.  A failure is logged so the next run is
+     * still scheduled.
+     */
+    @SuppressWarnings("unchecked")
+    private void rollForwardCurrentViews() {
+
+        for (final Class<?> type : metadataRegistry.getEntityClasses()) {
+            try {
+                rollForwardCurrentView((Class<O>) type);
+            } catch (final RuntimeException e) {
+                log.warn("Unable to roll forward the current view of {}", type.getSimpleName(), e);
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<O> findByKeyAt(
+      final @NotNull S key,
+      final @NotNull T at,
+      final @NotNull Class<O> resultType) {
+
+        return read(resultType, Collections.singleton(key), () -> findByKeyAtChecked(key, at, resultType));
+    }
+
+    private Optional<O> findByKeyAtChecked(
+      final S key,
+      final T at,
+      final Class<O> resultType) {
+
+        final TemporalMetrics metrics = getMetrics(resultType);
+        final long start = System.nanoTime();
+        final Optional<O> found;
+        if (timelineCache != null) {
+            found = Optional.ofNullable(timelineCache.getTimeline(resultType, key, () -> readPrimary(() -> findTimeline(key, resultType)))
+              .floorEntry(at))
+              .map(Map.Entry::getValue)
+              .map(getCopier(resultType)::copy);
+        } else {
+            found = findByConstraint(key, at, resultType);
+        }
+        record(metrics.getFind(), start);
+        (found.isPresent() ? metrics.getFindHits() : metrics.getFindMisses()).increment();
+        return found;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<O> findCurrentByKey(
+      final @NotNull S key,
+      final @NotNull Class<O> resultType) {
+
+        return read(resultType, Collections.singleton(key), () -> findCurrentByKeyChecked(key, resultType));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<O> findCurrentByKeyChecked(
+      final S key,
+      final Class<O> resultType) {
+
+        final TemporalMetadata metadata = metadataRegistry.get(resultType);
+        if (metadata.getClock() == null) {
+            throw new IllegalArgumentException(String.format("%s does not have a current time", resultType.getSimpleName()));
+        }
+        final T now = (T) metadata.getClock().get();
+        final TemporalCurrentView view = metadata.getCurrentView();
+        if (view == null || timelineCache != null) {
+            return findByKeyAtChecked(key, now, resultType);
+        }
+
+        final TemporalMetrics metrics = metadata.getMetrics();
+        final long start = System.nanoTime();
+        final List<?> ids = em.createNativeQuery(view.getFindVersionId())
+          .unwrap(NativeQuery.class)
+          .addScalar("version_id", metadata.getPersister().getIdentifierType())
+          .setParameter(PARAM_KEY, key)
+          .setParameter(TemporalCurrentView.PARAM_NOW, now)
+          .getResultList();
+        final O o = ids.isEmpty() ? null : em.find(resultType, ids.get(0));
+        if (o == null || !NOT_SUPERSEDED.equals(o.getSupersededBy())) {
+            // the key has no row or it is due to be rolled forward
+            return findByKeyAtChecked(key, now, resultType);
+        }
+        final Optional<O> found = o.getEffectiveOn().compareTo(now) > 0 ? Optional.empty() : Optional.of(o);
+        record(metrics.getFind(), start);
+        (found.isPresent() ? metrics.getFindHits() : metrics.getFindMisses()).increment();
+        return found;
+    }
+
+    /**
+     * Finds all the versions of a key that are not superseded.  The timeline has copies of the entities that are not
+     * managed, so it can be cached.  The entities are not detached, as the persistence context may already have been
+     * managing them for the caller.
      *
      * @param key key
-     * @param at at which time
-     * @param resultType result type.  This is needed as
-     * {@link javax.persistence.MappedSuperclass} cannot be used for JPA queries.
-     * @return temporal entity
+     * @param resultType result type
+     * @return temporal entities keyed by effective on.
      */
-    private Optional<O> findByConstraint(
+    private NavigableMap<T, O> findTimeline(
       final S key,
+      final Class<O> resultType) {
+        final TemporalEntityCopier<O> copier = getCopier(resultType);
+        final NavigableMap<T, O> timeline = new TreeMap<>();
+        for (final O o : em.createQuery(getQueries(resultType).getFindTimeline(), resultType)
+          .setParameter(PARAM_KEY, key)
+          .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+          .getResultList()) {
+            timeline.put(o.getEffectiveOn(), copier.copy(o));
+        }
+        getMetrics(resultType).getVersionsPerKey().record(timeline.size());
+        return timeline;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<S, O> findByKeysAt(
+      final @NotNull Collection<S> keys,
+      final @NotNull T at,
+      final @NotNull Class<O> resultType) {
+
+        return read(resultType, keys, () -> findByKeysAtChecked(keys, at, resultType));
+    }
+
+    private Map<S, O> findByKeysAtChecked(
+      final Collection<S> keys,
       final T at,
-      final Class<O> resultType
-    ) {
-
-        return findByConstraint(
-          key,
-          at,
-          TemporalRepositoryImpl.NOT_SUPERSEDED,
-          getTemporalType(resultType),
-          resultType
-        );
+      final Class<O> resultType) {
+
+        final TemporalMetrics metrics = getMetrics(resultType);
+        final long start = System.nanoTime();
+        final List<S> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        final Map<S, O> found = new HashMap<>(distinctKeys.size());
+        for (int i = 0; i < distinctKeys.size(); i += KEYS_PER_QUERY) {
+            final List<S> chunk = distinctKeys.subList(i, Math.min(i + KEYS_PER_QUERY, distinctKeys.size()));
+            for (final O o : em.createQuery(getQueries(resultType).getFindByKeysAt(), resultType)
+              .setParameter(PARAM_KEYS, chunk)
+              .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+              .setParameter(PARAM_AT, at)
+              .getResultList()) {
+                found.put(o.getKey(), o);
+            }
+        }
+
+        final Map<S, O> results = new LinkedHashMap<>(found.size());
+        for (final S key : distinctKeys) {
+            final O o = found.get(key);
+            if (o != null) {
+                results.put(key, o);
+            }
+        }
+        record(metrics.getFindKeys(), start);
+        metrics.getFindHits().increment(results.size());
+        metrics.getFindMisses().increment(distinctKeys.size() - results.size());
+        return results;
     }
 
     @Override
-    @Transactional
-    public Optional<O> findByKeyAt(
+    @Transactional(readOnly = true)
+    public Optional<String> findVersionTagAt(
       final @NotNull S key,
       final @NotNull T at,
       final @NotNull Class<O> resultType) {
 
-        return findByConstraint(key, at, resultType);
+        final List<?> versions = read(resultType, Collections.singleton(key), () -> em.createQuery(getQueries(resultType).getFindVersionTagAt())
+          .setParameter(PARAM_KEY, key)
+          .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+          .setParameter(PARAM_AT, at)
+          .getResultList());
+        return versions.stream()
+          .map(Object[].class::cast)
+          .map(version -> TemporalEntity.versionTag((UUID) version[0], (Temporal) version[1]))
+          .findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<TemporalProjection> findFieldsByKeyAt(
+      final @NotNull S key,
+      final @NotNull T at,
+      final @NotNull Collection<String> fields,
+      final @NotNull Class<O> resultType) {
+
+        return read(resultType, Collections.singleton(key), () -> findFieldsByKeyAtChecked(key, at, fields, resultType));
+    }
+
+    private Optional<TemporalProjection> findFieldsByKeyAtChecked(
+      final S key,
+      final T at,
+      final Collection<String> fields,
+      final Class<O> resultType) {
+
+        final TemporalMetadata metadata = metadataRegistry.get(resultType);
+        final Set<String> attributes = new TreeSet<>();
+        final Set<String> entries = new TreeSet<>();
+        for (final String field : fields) {
+            if (metadata.getAttributeNames().contains(field)) {
+                attributes.add(field);
+            } else if (metadata.getEntriesAttribute() != null) {
+                entries.add(field);
+            } else {
+                throw new IllegalArgumentException(String.format("%s is not an attribute of %s", field, resultType.getSimpleName()));
+            }
+        }
+        // entries stored in a column are selected with the whole column
+        final boolean joinEntries = !entries.isEmpty() && metadata.isEntriesCollection();
+        final List<String> selected = new ArrayList<>(attributes);
+        if (!entries.isEmpty() && !joinEntries) {
+            selected.add(metadata.getEntriesAttribute());
+        }
+
+        final TemporalMetrics metrics = metadata.getMetrics();
+        final long start = System.nanoTime();
+        final Query q = em.createQuery(metadata.getQueries().getFindFieldsAt(selected, joinEntries ? metadata.getEntriesAttribute() : null))
+          .setParameter(PARAM_KEY, key)
+          .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+          .setParameter(PARAM_AT, at);
+        if (joinEntries) {
+            q.setParameter(PARAM_ENTRIES, entries);
+        }
+        final List<?> rows = q.getResultList();
+        record(metrics.getFind(), start);
+        (rows.isEmpty() ? metrics.getFindMisses() : metrics.getFindHits()).increment();
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final Object[] first = (Object[]) rows.get(0);
+        final Map<String, Object> values = new LinkedHashMap<>();
+        int i = 2;
+        for (final String attribute : attributes) {
+            values.put(attribute, first[i++]);
+        }
+        if (joinEntries) {
+            for (final Object row : rows) {
+                final Object[] columns = (Object[]) row;
+                if (columns[i] != null) {
+                    values.put((String) columns[i], columns[i + 1]);
+                }
+            }
+        } else if (!entries.isEmpty() && first[i] != null) {
+            final Map<?, ?> column = (Map<?, ?>) first[i];
+            for (final String entry : entries) {
+                if (column.containsKey(entry)) {
+                    values.put(entry, column.get(entry));
+                }
+            }
+        }
+        return Optional.of(new TemporalProjection((UUID) first[0], (Temporal) first[1], values));
+    }
+
+    @Override
+    public Stream<O> findHistory(
+      final @NotNull S key,
+      final T from,
+      final T to,
+      final boolean includeSuperseded,
+      final @NotNull Class<O> resultType) {
+
+        final boolean archived = includeSuperseded && archiveIncludedInHistory;
+        return stream(
+          resultType,
+          Collections.singleton(key),
+          streamEm -> {
+              final Query q = archived
+                ? streamEm.createNativeQuery(getArchive(resultType).getFindHistory(from != null, to != null), resultType)
+                : streamEm.createQuery(getQueries(resultType).getFindHistory(from != null, to != null, includeSuperseded), resultType);
+              q.setParameter(PARAM_KEY, key);
+              if (!includeSuperseded) {
+                  q.setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED);
+              }
+              if (from != null) {
+                  q.setParameter(PARAM_FROM, from);
+              }
+              if (to != null) {
+                  q.setParameter(PARAM_TO, to);
+              }
+              return q;
+          });
+    }
+
+    @Override
+    public Stream<O> findChanged(
+      final Instant since,
+      final UUID afterId,
+      final int limit,
+      final @NotNull Class<O> resultType) {
+
+        if (afterId != null && since == null) {
+            throw new IllegalArgumentException("since is required with afterId");
+        }
+        final Instant until = Instant.now().minusMillis(changedSettleMillis);
+        return stream(
+          resultType,
+          Collections.emptyList(),
+          streamEm -> {
+              final Query q = streamEm.createQuery(getQueries(resultType).getFindChanged(since != null, afterId != null), resultType)
+                .setParameter(PARAM_UNTIL, until)
+                .setMaxResults(limit);
+              if (since != null) {
+                  q.setParameter(PARAM_SINCE, since);
+              }
+              if (afterId != null) {
+                  q.setParameter(PARAM_AFTER_ID, afterId);
+              }
+              return q;
+          });
+    }
+
+    @Override
+    public Stream<O> findSnapshotAt(
+      final @NotNull T at,
+      final @NotNull Class<O> resultType) {
+
+        final long start = System.nanoTime();
+        final AtomicLong rows = new AtomicLong();
+        return stream(
+          resultType,
+          Collections.emptyList(),
+          streamEm -> streamEm.createQuery(getQueries(resultType).getFindSnapshotAt(), resultType)
+            .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+            .setParameter(PARAM_AT, at))
+          .peek(o -> rows.incrementAndGet())
+          .onClose(() -> {
+              final long elapsedMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+              log.info("Snapshot of {} at {} streamed {} rows in {} ms ({} rows/s)",
+                resultType.getSimpleName(),
+                at,
+                rows.get(),
+                elapsedMillis,
+                rows.get() * 1000L / elapsedMillis);
+          });
     }
 
     /**
-     * Gets the temporal type from the result type.  Uses the cached value if available.
+     * Streams the results of a query from a dedicated read only persistence context that is not bound to the
+     * transaction.  The results are fetched using a scrolling cursor and each entity is detached once it is read so the
+     * persistence context does not grow.  Closing the stream closes the persistence context.
      *
      * @param resultType result type
-     * @return temporal type.
+     * @param keys keys that are read, empty if the query is not for specific keys
+     * @param query creates the query with its parameters bound from the persistence context
+     * @return results
      */
-    @SuppressWarnings("unchecked")
-    private Class<T> getTemporalType(Class<O> resultType) {
-        return temporalTypeMap.computeIfAbsent(
+    private Stream<O> stream(
+      final Class<O> resultType,
+      final Collection<S> keys,
+      final Function<EntityManager, Query> query) {
+
+        final EntityManager streamEm = emf.createEntityManager();
+        try {
+            streamEm.unwrap(Session.class).setDefaultReadOnly(true);
+            final Query q = query.apply(streamEm)
+              .setHint(QueryHints.HINT_FETCH_SIZE, streamFetchSize)
+              .setHint(QueryHints.HINT_READONLY, true);
+            final EntityPersister persister = metadataRegistry.get(resultType).getPersister();
+            return read(resultType, keys, () -> (Stream<?>) q.getResultStream())
+              .map(resultType::cast)
+              .peek(o -> {
+                  // collections are not fetched when scrolling so they are initialized before detaching.
+                  for (final Object value : persister.getPropertyValues(o)) {
+                      Hibernate.initialize(value);
+                  }
+                  streamEm.detach(o);
+              })
+              .onClose(streamEm::close);
+        } catch (final RuntimeException e) {
+            streamEm.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Performs a read using the replica if it is configured.
+     *
+     * @param resultType result type
+     * @param keys keys that are read
+     * @param read read operation
+     * @param <R> result type of the read
+     * @return result of the read
+     * @see ReplicaRouting#read(Class, Collection, Supplier)
+     */
+    private <R> R read(
+      final Class<O> resultType,
+      final Collection<S> keys,
+      final Supplier<R> read) {
+
+        return replicaRouting == null ? read.get() : replicaRouting.read(resultType, keys, read);
+    }
+
+    /**
+     * Performs a read using the primary if the replica is configured.
+     *
+     * @param read read operation
+     * @param <R> result type of the read
+     * @return result of the read
+     * @see ReplicaRouting#readPrimary(Supplier)
+     */
+    private <R> R readPrimary(final Supplier<R> read) {
+
+        return replicaRouting == null ? read.get() : replicaRouting.readPrimary(read);
+    }
+
+    /**
+     * Gets the queries for the result type.
+     *
+     * @param resultType result type
+     * @return queries.
+     */
+    private TemporalQueries getQueries(Class<O> resultType) {
+        return metadataRegistry.get(resultType).getQueries();
+    }
+
+    /**
+     * Gets the archive SQL for the result type and creates the history table if it does not exist.  Uses the cached
+     * value if available.
+     *
+     * @param resultType result type
+     * @return archive SQL.
+     */
+    private TemporalArchive getArchive(final Class<O> resultType) {
+        return archiveMap.computeIfAbsent(
           resultType,
           t -> {
-              try {
-                  return (Class<T>) resultType.getMethod("getEffectiveOn").getReturnType();
-              } catch (ReflectiveOperationException e) {
-                  throw new IllegalStateException(e);
+              final AbstractEntityPersister persister = metadataRegistry.get(t).getPersister();
+              if (Arrays.stream(persister.getPropertyTypes()).anyMatch(Type::isCollectionType)) {
+                  throw new PersistenceException(String.format("%s has collection tables and cannot be archived", t.getName()));
               }
+              final TemporalArchive archive = new TemporalArchive(persister, archiveTableSuffix);
+              createTableIfMissing(archive.getArchiveTable(), Collections.singletonList(archive.getCreateArchiveTable()));
+              return archive;
           }
         );
     }
 
     /**
-     * Finds the temporal entity for a given time.  This uses the computed temporal type.
+     * Creates a table that is not mapped if it does not exist.
+     *
+     * @param table table name
+     * @param ddl statements that create the table
+     */
+    private void createTableIfMissing(
+      final String table,
+      final List<String> ddl) {
+
+        final EntityManager ddlEm = emf.createEntityManager();
+        try {
+            ddlEm.unwrap(Session.class).doWork(connection -> {
+                final DatabaseMetaData metaData = connection.getMetaData();
+                for (final String name : Arrays.asList(table, table.toUpperCase(), table.toLowerCase())) {
+                    try (ResultSet tables = metaData.getTables(null, null, name, null)) {
+                        if (tables.next()) {
+                            return;
+                        }
+                    }
+                }
+                log.info("Creating table {}", table);
+                try (Statement statement = connection.createStatement()) {
+                    for (final String sql : ddl) {
+                        statement.execute(sql);
+                    }
+                }
+            });
+        } finally {
+            ddlEm.close();
+        }
+    }
+
+    /**
+     * Gets the copier for the result type.
+     *
+     * @param resultType result type
+     * @return copier.
+     */
+    @SuppressWarnings("unchecked")
+    private TemporalEntityCopier<O> getCopier(Class<O> resultType) {
+        return (TemporalEntityCopier<O>) metadataRegistry.get(resultType).getCopier();
+    }
+
+    /**
+     * Gets the meters for the result type.
+     *
+     * @param resultType result type
+     * @return meters.
+     */
+    private TemporalMetrics getMetrics(Class<O> resultType) {
+        return metadataRegistry.get(resultType).getMetrics();
+    }
+
+    /**
+     * Finds the temporal entity for a given time that is not superseded.
      *
      * @param key key
      * @param at at which time
-     * @param supersededBy specific superseded value
-     * @param temporalType temporal type
      * @param resultType result type
      * @return temporal entity
      */
     private Optional<O> findByConstraint(
       final S key,
       final T at,
-      final UUID supersededBy,
-      final Class<T> temporalType,
       final Class<O> resultType) {
-        final CriteriaBuilder cb = em.getCriteriaBuilder();
-        final CriteriaQuery<O> cq = cb.createQuery(resultType);
-
-        final Root<O> entityRoot = cq.from(resultType);
-
-        final Path<T> effectiveOn = entityRoot.get(FIELD_EFFECTIVE_ON);
-        Predicate keyPredicate = cb.equal(entityRoot.get(FIELD_KEY), key);
-        Predicate supersededByPredicate = cb.equal(entityRoot.get(FIELD_SUPERSEDED_BY), supersededBy);
-
-        final Subquery<T> effectiveOnQuery = cq.subquery(temporalType);
-        final Root<O> effectiveOnRoot = effectiveOnQuery.from(resultType);
-        Predicate keyPredicateQ = cb.equal(effectiveOnRoot.get(FIELD_KEY), key);
-        Predicate supersededByPredicateQ = cb.equal(effectiveOnRoot.get(FIELD_SUPERSEDED_BY), supersededBy);
-        final Path<T> effectiveOnQueryPath = effectiveOnRoot.get(FIELD_EFFECTIVE_ON);
-
-        final Predicate atPredicate = cb.lessThanOrEqualTo(effectiveOnRoot.get(FIELD_EFFECTIVE_ON), at);
 
         try {
             return Optional.of(
-              em.createQuery(cq.select(entityRoot)
-                .where(
-                  keyPredicate,
-                  supersededByPredicate,
-                  cb.equal(
-                    effectiveOn,
-                    effectiveOnQuery.select(cb.greatest(effectiveOnQueryPath))
-                      .where(
-                        keyPredicateQ,
-                        supersededByPredicateQ,
-                        atPredicate
-                      )
-                  )
-                ))
+              em.createQuery(getQueries(resultType).getFindByKeyAt(), resultType)
+                .setParameter(PARAM_KEY, key)
+                .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+                .setParameter(PARAM_AT, at)
                 .getSingleResult());
         } catch (final NoResultException e) {
             return Optional.empty();
         }
     }
 
+    @SuppressWarnings("unchecked")
     private O saveChecked(O object, Class<O> resultType) {
         validateObject(object);
         if (object.getId() != null) {
             log.warn(String.format("Temporal object ID should not be set, got: %s, resetting to null", object.getId()));
             object.nullifyId();
         }
-        final CriteriaBuilder cb = em.getCriteriaBuilder();
-        final CriteriaQuery<O> cq = cb.createQuery(resultType);
+        final TemporalMetrics metrics = getMetrics(resultType);
+        final long start = System.nanoTime();
+        lockKeys(Collections.singleton(object.getKey()), resultType);
+        if (replicaRouting != null) {
+            replicaRouting.recordWrites(resultType, Collections.singleton(object.getKey()));
+        }
+        if (timelineCache != null) {
+            timelineCache.invalidate(resultType, Collections.singleton(object.getKey()));
+        }
+        final TemporalQueries queries = getQueries(resultType);
+        final Instant recordedAt = Instant.now();
+        object.setRecordedAt(recordedAt);
+        final long lookupStart = System.nanoTime();
+        final Object[] version = findVersionAtOrNext(object.getKey(), object.getEffectiveOn(), resultType);
+        record(metrics.getSaveLookup(), lookupStart);
 
-        final Root<O> entityRoot = cq.from(resultType);
-        Predicate keyPredicate = cb.equal(entityRoot.get(FIELD_KEY), object.getKey());
-        Predicate effectiveOnPredicate = cb.equal(entityRoot.get(FIELD_EFFECTIVE_ON), object.getEffectiveOn());
-        Predicate supersededByPredicate = cb.equal(entityRoot.get(FIELD_SUPERSEDED_BY), NOT_SUPERSEDED);
+        // The new object is persisted first so its ID is generated, the insert is not flushed until after the update.
+        final int c = version == null ? 1 : ((T) version[1]).compareTo(object.getEffectiveOn());
+        if (c > 0) {
+            object.setEffectiveUntil(version == null ? null : (T) version[1]);
+            em.persist(object);
+        } else if (c == 0) {
+            object.setEffectiveUntil((T) version[2]);
+            em.persist(object);
+            final long updateStart = System.nanoTime();
+            updateVersion(queries.getUpdateSupersededBy(), (UUID) version[0], PARAM_SUPERSEDED_BY, object.getId(), recordedAt, resultType);
+            record(metrics.getSaveUpdate(), updateStart);
+            metrics.getSupersedes().increment();
+        } else {
+            object.setEffectiveUntil((T) version[2]);
+            em.persist(object);
+            final long updateStart = System.nanoTime();
+            updateVersion(queries.getUpdateEffectiveUntilById(), (UUID) version[0], PARAM_EFFECTIVE_UNTIL, object.getEffectiveOn(), recordedAt, resultType);
+            record(metrics.getSaveUpdate(), updateStart);
+        }
+        updateCurrentView(object, resultType);
+        record(metrics.getSave(), start);
+        if (changeFeed != null) {
+            changeFeed.publishAfterCommit(Collections.singletonList(change(object, c == 0 ? (UUID) version[0] : null)));
+        }
+        return object;
+    }
 
-        O existing = null;
-        try {
-            existing = em.createQuery(cq.select(entityRoot)
-              .where(
-                keyPredicate,
-                effectiveOnPredicate,
-                supersededByPredicate
-              )
-            ).getSingleResult();
-            existing.setSupersededBy(SUPERSEDED_TEMPORARILY);
-            em.merge(existing);
-            em.flush();
-        } catch (final NoResultException e) {
-            // no existing entry found.
-            log.trace("No existing temporal object found");
+    /**
+     * Updates the current view row of the key of a saved version.  A version that is effective now is the current
+     * version.  A version that is no longer effective now does not change the current version.  For a version that is
+     * effective in the future the current version is looked up as the effective until of the previous version may
+     * have changed.
+     *
+     * @param object saved version
+     * @param resultType result type
+     */
+    @SuppressWarnings("unchecked")
+    private void updateCurrentView(
+      final O object,
+      final Class<O> resultType) {
+
+        final TemporalMetadata metadata = metadataRegistry.get(resultType);
+        if (metadata.getCurrentView() == null) {
+            return;
         }
+        final T now = (T) metadata.getClock().get();
+        final Object[] pointer;
+        if (object.getEffectiveOn().compareTo(now) > 0) {
+            pointer = currentViewPointer(findVersionAtOrNext(object.getKey(), now, resultType), now);
+        } else if (object.getEffectiveUntil() == null || object.getEffectiveUntil().compareTo(now) > 0) {
+            pointer = new Object[]{object.getId(), object.getEffectiveUntil()};
+        } else {
+            return;
+        }
+        writeCurrentView(Collections.singletonMap(object.getKey(), pointer), metadata);
+    }
+
+    /**
+     * Determines the current view row from the version that is effective at a time or the next version.
+     *
+     * @param version id, effective on and effective until of the version, {@code null} if there is none
+     * @param now current time
+     * @return version id and the time the row must be evaluated again, {@code null} if the key has no row
+     * @see #findVersionAtOrNext(Serializable, Temporal, Class)
+     */
+    @SuppressWarnings("unchecked")
+    private Object[] currentViewPointer(
+      final Object[] version,
+      final T now) {
 
-        em.persist(object);
-        if (existing != null) {
-            existing.setSupersededBy(object.getId());
-            em.merge(existing);
+        if (version == null) {
+            return null;
         }
+        return new Object[]{version[0], ((T) version[1]).compareTo(now) > 0 ? version[1] : version[2]};
+    }
 
-        return object;
+    /**
+     * Replaces the current view rows of keys using JDBC batches.  The rows are deleted and inserted rather than merged
+     * so this does not depend on the database supporting {@code MERGE}.  This must be called with the keys locked.
+     *
+     * @param pointers version id and the time the row must be evaluated again by key, {@code null} to only delete
+     * the row
+     * @param metadata metadata of the result type
+     */
+    private void writeCurrentView(
+      final Map<S, Object[]> pointers,
+      final TemporalMetadata metadata) {
+
+        final TemporalCurrentView view = metadata.getCurrentView();
+        final AbstractEntityPersister persister = metadata.getPersister();
+        final Type keyType = persister.getPropertyType("key");
+        final Type changesAtType = persister.getPropertyType("effectiveUntil");
+        final Type idType = persister.getIdentifierType();
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        session.doWork(connection -> {
+            try (PreparedStatement delete = connection.prepareStatement(view.getDeleteKey());
+                 PreparedStatement insert = connection.prepareStatement(view.getInsertKey())) {
+                for (final Map.Entry<S, Object[]> pointer : pointers.entrySet()) {
+                    keyType.nullSafeSet(delete, pointer.getKey(), 1, session);
+                    delete.addBatch();
+                    if (pointer.getValue() != null) {
+                        keyType.nullSafeSet(insert, pointer.getKey(), 1, session);
+                        idType.nullSafeSet(insert, pointer.getValue()[0], 2, session);
+                        changesAtType.nullSafeSet(insert, pointer.getValue()[1], 3, session);
+                        insert.addBatch();
+                    }
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Creates the change for a saved version.
+     *
+     * @param object saved version
+     * @param supersededId id of the version it superseded
+     * @return change
+     */
+    private TemporalChange change(
+      final O object,
+      final UUID supersededId) {
+
+        return new TemporalChange(0, object.getClass().getSimpleName(), object.getKey(), object.getEffectiveOn(), object.getId(), supersededId);
+    }
+
+    /**
+     * Locks the keys for writing until the transaction completes.  This uses the striped in-process locks and if
+     * enabled locks the existing versions in the database.
+     *
+     * @param keys keys
+     * @param resultType result type
+     */
+    private void lockKeys(
+      final Collection<S> keys,
+      final Class<O> resultType) {
+
+        if (keyLocks != null) {
+            keyLocks.lock(resultType, keys);
+        }
+        if (pessimisticWriteLock) {
+            em.createQuery(getQueries(resultType).getLockKeys())
+              .setParameter(PARAM_KEYS, keys)
+              .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+              .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+              .getResultList();
+        }
+    }
+
+    /**
+     * Finds the version of a key that is effective at a given time, if there is none then the next version is returned
+     * instead.  Only the id, effective on and effective until are retrieved so the entity is not loaded into the
+     * persistence context.
+     *
+     * @param key key
+     * @param at at which time
+     * @param resultType result type
+     * @return id, effective on and effective until of the version or {@code null} if there is no version at or after
+     * the given time.
+     */
+    private Object[] findVersionAtOrNext(
+      final S key,
+      final T at,
+      final Class<O> resultType) {
+
+        final List<?> versions = em.createQuery(getQueries(resultType).getFindVersionAtOrNext())
+          .setParameter(PARAM_KEY, key)
+          .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+          .setParameter(PARAM_AT, at)
+          .setMaxResults(1)
+          .getResultList();
+        return versions.isEmpty() ? null : (Object[]) versions.get(0);
+    }
+
+    /**
+     * Updates a single attribute of a version using a bulk update.  The update is executed without flushing so the
+     * pending insert of the new version is written after it which avoids violating the unique constraint.  If the
+     * version is in the persistence context it is detached as its state is no longer current.
+     *
+     * @param update update query
+     * @param id version id
+     * @param parameter name of the parameter to set
+     * @param value value of the parameter
+     * @param recordedAt when the version is recorded
+     * @param resultType result type
+     */
+    private void updateVersion(
+      final String update,
+      final UUID id,
+      final String parameter,
+      final Object value,
+      final Instant recordedAt,
+      final Class<O> resultType) {
+
+        em.createQuery(update)
+          .setFlushMode(FlushModeType.COMMIT)
+          .setParameter(PARAM_ID, id)
+          .setParameter(parameter, value)
+          .setParameter(PARAM_RECORDED_AT, recordedAt)
+          .executeUpdate();
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final Object managed = session.getPersistenceContext()
+          .getEntity(session.generateEntityKey(id, session.getFactory().getMetamodel().entityPersister(resultType)));
+        if (managed != null) {
+            em.detach(managed);
+        }
     }
 
     /**
@@ -209,6 +1015,286 @@ class TemporalRepositoryImpl<
         return saveChecked(object, (Class<O>) object.getClass());
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    @Transactional
+    public List<O> saveAllTemporal(final Iterable<O> objects) {
+        final List<O> saved = new ArrayList<>();
+        final Map<Class<O>, Map<S, List<O>>> byTypeAndKey = new LinkedHashMap<>();
+        for (final O object : objects) {
+            validateObject(object);
+            if (object.getId() != null) {
+                log.warn(String.format("Temporal object ID should not be set, got: %s, resetting to null", object.getId()));
+                object.nullifyId();
+            }
+            byTypeAndKey.computeIfAbsent((Class<O>) object.getClass(), t -> new LinkedHashMap<>())
+              .computeIfAbsent(object.getKey(), k -> new ArrayList<>())
+              .add(object);
+            saved.add(object);
+        }
+
+        for (final Map.Entry<Class<O>, Map<S, List<O>>> entry : byTypeAndKey.entrySet()) {
+            final List<S> keys = new ArrayList<>(entry.getValue().keySet());
+            for (int i = 0; i < keys.size(); i += KEYS_PER_QUERY) {
+                final Map<S, List<O>> chunk = new LinkedHashMap<>();
+                for (final S key : keys.subList(i, Math.min(i + KEYS_PER_QUERY, keys.size()))) {
+                    chunk.put(key, entry.getValue().get(key));
+                }
+                saveAllChecked(chunk, entry.getKey());
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Saves a chunk of temporal objects grouped by key.  The existing rows for all the keys are retrieved in a single
+     * query.  The existing rows are marked as {@link #SUPERSEDED_TEMPORARILY} and flushed once for the whole chunk so
+     * the inserts which are executed before updates by Hibernate do not violate the unique constraint.  Objects in the
+     * chunk with the same key and effective on are chained so the last one is the one that is not superseded.
+     *
+     * @param objectsByKey objects grouped by key, the number of keys should not exceed {@link #KEYS_PER_QUERY}.
+     * @param resultType result type
+     */
+    private void saveAllChecked(
+      final Map<S, List<O>> objectsByKey,
+      final Class<O> resultType) {
+
+        lockKeys(objectsByKey.keySet(), resultType);
+        if (replicaRouting != null) {
+            replicaRouting.recordWrites(resultType, new ArrayList<>(objectsByKey.keySet()));
+        }
+        if (timelineCache != null) {
+            timelineCache.invalidate(resultType, new ArrayList<>(objectsByKey.keySet()));
+        }
+        final List<O> existingObjects = findNotSupersededByKeys(objectsByKey.keySet(), resultType);
+        final Map<S, NavigableMap<T, O>> timelines = new HashMap<>();
+        for (final O existing : existingObjects) {
+            timelines.computeIfAbsent(existing.getKey(), k -> new TreeMap<>())
+              .put(existing.getEffectiveOn(), existing);
+        }
+
+        final Instant recordedAt = Instant.now();
+        final List<List<O>> versionChains = new ArrayList<>();
+        final List<O> superseded = new ArrayList<>();
+        for (final Map.Entry<S, List<O>> entry : objectsByKey.entrySet()) {
+            final Map<T, List<O>> byEffectiveOn = new LinkedHashMap<>();
+            for (final O object : entry.getValue()) {
+                byEffectiveOn.computeIfAbsent(object.getEffectiveOn(), e -> new ArrayList<>())
+                  .add(object);
+            }
+            final NavigableMap<T, O> timeline = timelines.computeIfAbsent(entry.getKey(), k -> new TreeMap<>());
+            for (final Map.Entry<T, List<O>> versions : byEffectiveOn.entrySet()) {
+                final List<O> chain = versions.getValue();
+                final O existing = timeline.put(versions.getKey(), chain.get(chain.size() - 1));
+                if (existing != null) {
+                    existing.setSupersededBy(SUPERSEDED_TEMPORARILY);
+                    existing.setRecordedAt(recordedAt);
+                }
+                chain.forEach(o -> o.setRecordedAt(recordedAt));
+                superseded.add(existing);
+                versionChains.add(chain);
+            }
+            updateEffectiveUntil(timeline, recordedAt);
+        }
+        for (final List<O> chain : versionChains) {
+            final T effectiveUntil = chain.get(chain.size() - 1).getEffectiveUntil();
+            chain.forEach(o -> o.setEffectiveUntil(effectiveUntil));
+        }
+        final TemporalMetrics metrics = getMetrics(resultType);
+        for (final S key : objectsByKey.keySet()) {
+            metrics.getVersionsPerKey().record(timelines.get(key).size());
+        }
+        if (superseded.stream().anyMatch(Objects::nonNull)) {
+            final long flushStart = System.nanoTime();
+            em.flush();
+            record(metrics.getSaveFlush(), flushStart);
+        }
+
+        for (int i = 0; i < versionChains.size(); ++i) {
+            final List<O> chain = versionChains.get(i);
+            O supersededBy = null;
+            for (int j = chain.size() - 1; j >= 0; --j) {
+                final O object = chain.get(j);
+                if (supersededBy != null) {
+                    object.setSupersededBy(supersededBy.getId());
+                }
+                em.persist(object);
+                supersededBy = object;
+            }
+            final O existing = superseded.get(i);
+            if (existing != null) {
+                existing.setSupersededBy(supersededBy.getId());
+                metrics.getSupersedes().increment();
+            }
+        }
+        final long flushStart = System.nanoTime();
+        em.flush();
+        record(metrics.getSaveFlush(), flushStart);
+
+        final TemporalMetadata metadata = metadataRegistry.get(resultType);
+        if (metadata.getCurrentView() != null) {
+            @SuppressWarnings("unchecked") final T now = (T) metadata.getClock().get();
+            final Map<S, Object[]> pointers = new LinkedHashMap<>();
+            for (final S key : objectsByKey.keySet()) {
+                final NavigableMap<T, O> timeline = timelines.get(key);
+                final Map.Entry<T, O> current = timeline.floorEntry(now);
+                final O o = current == null ? timeline.firstEntry().getValue() : current.getValue();
+                pointers.put(key, new Object[]{o.getId(), current == null ? o.getEffectiveOn() : o.getEffectiveUntil()});
+            }
+            writeCurrentView(pointers, metadata);
+        }
+
+        if (changeFeed != null) {
+            final List<TemporalChange> changes = new ArrayList<>();
+            for (int i = 0; i < versionChains.size(); ++i) {
+                final O existing = superseded.get(i);
+                UUID supersededId = existing == null ? null : existing.getId();
+                for (final O object : versionChains.get(i)) {
+                    changes.add(change(object, supersededId));
+                    supersededId = object.getId();
+                }
+            }
+            changeFeed.publishAfterCommit(changes);
+        }
+
+        for (final List<O> chain : versionChains) {
+            chain.forEach(em::detach);
+        }
+        existingObjects.forEach(em::detach);
+    }
+
+    /**
+     * Sets the effective until of each version in the timeline to the effective on of the next version.  Only the
+     * versions whose effective until changes are modified.
+     *
+     * @param timeline versions of a key that are not superseded
+     */
+    private void updateEffectiveUntil(
+      final NavigableMap<T, O> timeline,
+      final Instant recordedAt) {
+
+        T next = null;
+        for (final O o : timeline.descendingMap().values()) {
+            if (!Objects.equals(o.getEffectiveUntil(), next)) {
+                o.setEffectiveUntil(next);
+                o.setRecordedAt(recordedAt);
+            }
+            next = o.getEffectiveOn();
+        }
+    }
+
+    /**
+     * Finds all the temporal entities that are not superseded for a set of keys.
+     *
+     * @param keys keys, the size should not exceed {@link #KEYS_PER_QUERY}.
+     * @param resultType result type
+     * @return temporal entities
+     */
+    private List<O> findNotSupersededByKeys(
+      final Collection<S> keys,
+      final Class<O> resultType) {
+        return em.createQuery(getQueries(resultType).getFindByKeys(), resultType)
+          .setParameter(PARAM_KEYS, keys)
+          .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+          .getResultList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public int backfillEffectiveUntil(final Class<O> resultType) {
+        return em.createQuery(getQueries(resultType).getUpdateEffectiveUntil())
+          .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+          .setParameter(PARAM_RECORDED_AT, Instant.now())
+          .executeUpdate();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long archiveSuperseded(final Class<O> resultType) {
+
+        final TemporalArchive archive = getArchive(resultType);
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long archived = 0;
+        int moved;
+        do {
+            moved = Objects.requireNonNull(transactionTemplate.execute(status -> {
+                final List<?> ids = em.createQuery(getQueries(resultType).getFindSupersededIds())
+                  .setParameter(PARAM_SUPERSEDED_BY, NOT_SUPERSEDED)
+                  .setMaxResults(archiveBatchSize)
+                  .getResultList();
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                final int inserted = em.createNativeQuery(archive.getInsertArchive())
+                  .setParameter(TemporalArchive.PARAM_IDS, ids)
+                  .executeUpdate();
+                final int deleted = em.createNativeQuery(archive.getDeleteLive())
+                  .setParameter(TemporalArchive.PARAM_IDS, ids)
+                  .executeUpdate();
+                if (inserted != ids.size() || deleted != ids.size()) {
+                    throw new PersistenceException(String.format("Expected to archive %d versions, inserted %d and deleted %d", ids.size(), inserted, deleted));
+                }
+                return ids.size();
+            }));
+            archived += moved;
+        } while (moved == archiveBatchSize);
+        log.info("Archived {} superseded versions of {} to {}", archived, resultType.getSimpleName(), archive.getArchiveTable());
+        return archived;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @SuppressWarnings("unchecked")
+    public long rollForwardCurrentView(final Class<O> resultType) {
+
+        final TemporalMetadata metadata = metadataRegistry.get(resultType);
+        final TemporalCurrentView view = metadata.getCurrentView();
+        if (view == null) {
+            return 0;
+        }
+        final T now = (T) metadata.getClock().get();
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long rolledForward = 0;
+        int moved;
+        do {
+            moved = Objects.requireNonNull(transactionTemplate.execute(status -> {
+                final List<S> keys = em.createNativeQuery(view.getFindDueKeys())
+                  .unwrap(NativeQuery.class)
+                  .addScalar(view.getKeyColumn(), metadata.getPersister().getPropertyType("key"))
+                  .setParameter(TemporalCurrentView.PARAM_NOW, now)
+                  .setMaxResults(currentViewBatchSize)
+                  .getResultList();
+                if (keys.isEmpty()) {
+                    return 0;
+                }
+                lockKeys(keys, resultType);
+                final Map<S, Object[]> pointers = new LinkedHashMap<>();
+                for (final S key : keys) {
+                    pointers.put(key, currentViewPointer(findVersionAtOrNext(key, now, resultType), now));
+                }
+                writeCurrentView(pointers, metadata);
+                return keys.size();
+            }));
+            rolledForward += moved;
+        } while (moved == currentViewBatchSize);
+        if (rolledForward > 0) {
+            log.info("Rolled forward {} current view rows of {}", rolledForward, resultType.getSimpleName());
+        }
+        return rolledForward;
+    }
+
     /**
      * Validates if the object is valid for saving.
      *
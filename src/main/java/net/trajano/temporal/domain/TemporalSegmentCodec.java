@@ -0,0 +1,99 @@
+package net.trajano.temporal.domain;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.ResolvableType;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes the versions of an entity class as JSON objects of their fields for the segment files.  The fields are read
+ * and set directly so the JSON annotations the entity has for the web API do not apply.
+ *
+ * @param <O> temporal entity type
+ */
+final class TemporalSegmentCodec<O> {
+
+    /**
+     * The Java time module is found on the class path.  Temporal values are written as ISO strings as numeric
+     * timestamps lose precision when they are read back.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+      .findAndRegisterModules()
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final Class<O> entityClass;
+
+    /**
+     * Fields with their resolved types.
+     */
+    private final Map<Field, JavaType> fields = new LinkedHashMap<>();
+
+    /**
+     * @param entityClass entity class
+     * @param fields fields that are encoded, they must be accessible
+     */
+    TemporalSegmentCodec(
+      final Class<O> entityClass,
+      final Collection<Field> fields) {
+
+        this.entityClass = entityClass;
+        for (final Field field : fields) {
+            final ResolvableType type = ResolvableType.forField(field, entityClass);
+            this.fields.put(field, type.hasGenerics()
+              ? MAPPER.constructType(field.getGenericType())
+              : MAPPER.constructType(type.resolve(Object.class)));
+        }
+    }
+
+    /**
+     * @param payload payload of a record
+     * @return version
+     */
+    O decode(final ByteBuffer payload) {
+
+        try {
+            final JsonNode tree = MAPPER.readTree(new ByteBufferBackedInputStream(payload));
+            final O version = BeanUtils.instantiateClass(entityClass);
+            for (final Map.Entry<Field, JavaType> field : fields.entrySet()) {
+                final JsonNode value = tree.get(field.getKey().getName());
+                if (value != null) {
+                    ReflectionUtils.setField(field.getKey(), version, MAPPER.convertValue(value, field.getValue()));
+                }
+            }
+            return version;
+        } catch (final IOException | IllegalArgumentException e) {
+            throw new DataAccessResourceFailureException(String.format("Unable to decode a %s record", entityClass.getSimpleName()), e);
+        }
+    }
+
+    /**
+     * @param version version
+     * @return payload of the record
+     */
+    byte[] encode(final O version) {
+
+        final ObjectNode tree = MAPPER.createObjectNode();
+        for (final Field field : fields.keySet()) {
+            tree.set(field.getName(), MAPPER.valueToTree(ReflectionUtils.getField(field, version)));
+        }
+        try {
+            return MAPPER.writeValueAsBytes(tree);
+        } catch (final IOException e) {
+            throw new DataAccessResourceFailureException(String.format("Unable to encode a %s record", entityClass.getSimpleName()), e);
+        }
+    }
+
+}
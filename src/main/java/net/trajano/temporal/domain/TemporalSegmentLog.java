@@ -0,0 +1,731 @@
+package net.trajano.temporal.domain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only segment files of the version and delete records of an entity class.  Each record is framed with its
+ * length, a CRC32, its type and the transaction it was appended in, so a record that was only partly written when the process stopped
+ * is found and truncated when the log is opened.  The records of a transaction are only replayed if its commit record
+ * follows them, so the records of a transaction that was rolled back or did not complete are ignored.  Records are
+ * appended to the last segment which is rolled when it reaches the maximum size, and the segments before it are
+ * rewritten by {@link #compact(Function, Predicate)} into a compacted segment.  A compacted segment replaces the
+ * segments up to its sequence number as soon as it is renamed into place, so those segments are ignored and deleted
+ * if the process stopped before it deleted them.  Segments are read through a {@link MappedByteBuffer} so the payloads
+ * are passed on without being copied.
+ */
+@Slf4j
+final class TemporalSegmentLog {
+
+    /**
+     * Suffix of a compacted segment.
+     */
+    private static final String COMPACTED_SUFFIX = ".compacted";
+
+    /**
+     * Record that commits the records of its transaction, it has no payload.
+     */
+    private static final byte COMMIT = 1;
+
+    /**
+     * Record that deletes a version, its payload is the id of the version.
+     */
+    private static final byte DELETE = 2;
+
+    /**
+     * Length of the payload, CRC32 of the rest of the record, type and transaction.
+     */
+    private static final int HEADER_BYTES = 17;
+
+    /**
+     * Transaction of the records that were not appended in a transaction.
+     */
+    private static final long NO_TRANSACTION = 0;
+
+    /**
+     * Record of a version.
+     */
+    private static final byte VERSION = 0;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Segment that records are appended to, guarded by {@code this}.
+     */
+    private FileChannel active;
+
+    /**
+     * Sequence number of the active segment, guarded by {@code this}.
+     */
+    private long activeSequence;
+
+    /**
+     * Prevents compactions from running at the same time.
+     */
+    private final Object compactLock = new Object();
+
+    private final Path directory;
+
+    /**
+     * Transactions whose records were appended and that have not been committed or aborted, guarded by {@code this}.
+     */
+    private final Set<Long> inFlight = new HashSet<>();
+
+    /**
+     * Last transaction that was started, guarded by {@code this}.
+     */
+    private long lastTransaction;
+
+    private final long maxSegmentBytes;
+
+    /**
+     * Forces the appended records to disk before the append returns.
+     */
+    private final boolean syncOnAppend;
+
+    /**
+     * Serializes forcing the records to disk.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * Number of bytes appended that are known to be on disk, guarded by {@link #syncLock}.
+     */
+    private long synced;
+
+    /**
+     * Number of bytes appended since the log was opened, guarded by {@code this}.
+     */
+    private long written;
+
+    private TemporalSegmentLog(
+      final Path directory,
+      final long maxSegmentBytes,
+      final boolean syncOnAppend,
+      final long activeSequence,
+      final long lastTransaction) throws IOException {
+
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.syncOnAppend = syncOnAppend;
+        this.activeSequence = activeSequence;
+        this.lastTransaction = lastTransaction;
+        active = FileChannel.open(segment(directory, activeSequence), CREATE, WRITE, APPEND);
+        syncDirectory(directory);
+    }
+
+    /**
+     * Opens the log in a directory, creating it if it does not exist, and passes every record that was committed to
+     * the replay in the order they were committed.  A record at the end of the last segment that is incomplete is
+     * truncated.
+     *
+     * @param directory directory of the segments
+     * @param maxSegmentBytes size at which the active segment is rolled
+     * @param syncOnAppend {@code true} to force the records to disk before an append returns
+     * @param replay receives the payload of each version record, the buffer is only valid until it returns
+     * @param delete receives the version id of each delete record
+     * @return log
+     */
+    static TemporalSegmentLog open(
+      final Path directory,
+      final long maxSegmentBytes,
+      final boolean syncOnAppend,
+      final Consumer<ByteBuffer> replay,
+      final Consumer<UUID> delete) {
+
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> temps = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+                for (final Path temp : temps) {
+                    Files.delete(temp);
+                }
+            }
+            final List<Path> segments = segments(directory);
+            final Replay committed = new Replay(replay, delete);
+            for (int i = 0; i < segments.size(); ++i) {
+                final Path segment = segments.get(i);
+                final long valid = read(segment, committed);
+                final long size = Files.size(segment);
+                if (valid == size) {
+                    continue;
+                }
+                if (i < segments.size() - 1) {
+                    throw new IOException(String.format("%s has an invalid record at %d", segment, valid));
+                }
+                log.warn("Truncating {} from {} to {} bytes as the last record was not completely written", segment, size, valid);
+                try (FileChannel channel = FileChannel.open(segment, WRITE)) {
+                    channel.truncate(valid);
+                    channel.force(true);
+                }
+            }
+            if (!committed.pending.isEmpty()) {
+                log.warn("Ignoring the records of {} transactions in {} that were not committed", committed.pending.size(), directory);
+            }
+            final long activeSequence;
+            if (segments.isEmpty()) {
+                activeSequence = 0;
+            } else {
+                final Path last = segments.get(segments.size() - 1);
+                activeSequence = last.toString().endsWith(COMPACTED_SUFFIX) ? sequence(last) + 1 : sequence(last);
+            }
+            return new TemporalSegmentLog(directory, maxSegmentBytes, syncOnAppend, activeSequence, committed.lastTransaction);
+        } catch (final IOException e) {
+            throw new DataAccessResourceFailureException(String.format("Unable to open the segments in %s", directory), e);
+        }
+    }
+
+    /**
+     * Appends records that are not in a transaction and forces them to disk if records are forced on append.
+     *
+     * @param payloads payloads of the version records
+     * @param deleted ids of the versions that are deleted
+     */
+    void append(
+      final List<byte[]> payloads,
+      final Collection<UUID> deleted) {
+
+        write(records(NO_TRANSACTION, payloads, deleted), NO_TRANSACTION, syncOnAppend);
+    }
+
+    /**
+     * Appends the records of a transaction.  They are not replayed until the transaction is committed with {@link
+     * #commit(long)}, so they are not forced to disk here.
+     *
+     * @param payloads payloads of the version records
+     * @param deleted ids of the versions that are deleted
+     * @return transaction
+     */
+    long appendPending(
+      final List<byte[]> payloads,
+      final Collection<UUID> deleted) {
+
+        final long transaction;
+        synchronized (this) {
+            transaction = ++lastTransaction;
+            inFlight.add(transaction);
+        }
+        try {
+            write(records(transaction, payloads, deleted), NO_TRANSACTION, false);
+        } catch (final RuntimeException e) {
+            abort(transaction);
+            throw e;
+        }
+        return transaction;
+    }
+
+    /**
+     * Appends the commit record of a transaction and forces it to disk, with its records, if records are forced on
+     * append.
+     *
+     * @param transaction transaction
+     */
+    void commit(final long transaction) {
+
+        final ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES);
+        header(record, new CRC32(), COMMIT, transaction, ByteBuffer.allocate(0));
+        record.flip();
+        write(record, transaction, syncOnAppend);
+    }
+
+    /**
+     * Forgets a transaction that will not be committed.  Its records stay in the segments until they are compacted,
+     * but they are not replayed as there is no commit record.
+     *
+     * @param transaction transaction
+     */
+    synchronized void abort(final long transaction) {
+
+        inFlight.remove(transaction);
+    }
+
+    /**
+     * Frames the records of a write.
+     *
+     * @param transaction transaction of the records
+     * @param payloads payloads of the version records
+     * @param deleted ids of the versions that are deleted
+     * @return records
+     */
+    private static ByteBuffer records(
+      final long transaction,
+      final List<byte[]> payloads,
+      final Collection<UUID> deleted) {
+
+        int size = deleted.size() * (HEADER_BYTES + 16);
+        for (final byte[] payload : payloads) {
+            size += HEADER_BYTES + payload.length;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        final CRC32 crc = new CRC32();
+        for (final byte[] payload : payloads) {
+            header(buffer, crc, VERSION, transaction, ByteBuffer.wrap(payload));
+            buffer.put(payload);
+        }
+        final ByteBuffer id = ByteBuffer.allocate(16);
+        for (final UUID version : deleted) {
+            id.clear();
+            id.putLong(version.getMostSignificantBits())
+              .putLong(version.getLeastSignificantBits())
+              .flip();
+            header(buffer, crc, DELETE, transaction, id);
+            buffer.put(id);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Appends records to the active segment with a single write.  If the write fails the segment is truncated to
+     * where it was.  When records are forced to disk, records appended by other threads while waiting to force them
+     * are forced together.
+     *
+     * @param records framed records
+     * @param committed transaction that the records commit, {@link #NO_TRANSACTION} if they do not commit one
+     * @param sync {@code true} to force the records to disk
+     */
+    private void write(
+      final ByteBuffer records,
+      final long committed,
+      final boolean sync) {
+
+        final int size = records.remaining();
+        final long end;
+        try {
+            synchronized (this) {
+                if (active.size() > 0 && active.size() + size > maxSegmentBytes) {
+                    roll();
+                }
+                final long position = active.size();
+                try {
+                    while (records.hasRemaining()) {
+                        active.write(records);
+                    }
+                } catch (final IOException e) {
+                    active.truncate(position);
+                    throw e;
+                }
+                inFlight.remove(committed);
+                written += size;
+                end = written;
+            }
+            if (sync) {
+                sync(end);
+            }
+        } catch (final IOException e) {
+            throw new DataAccessResourceFailureException(String.format("Unable to append to the segments in %s", directory), e);
+        }
+    }
+
+    /**
+     * Forces the records that were appended to disk.
+     */
+    void sync() {
+
+        try {
+            sync(Long.MAX_VALUE);
+        } catch (final IOException e) {
+            throw new DataAccessResourceFailureException(String.format("Unable to force the segments in %s to disk", directory), e);
+        }
+    }
+
+    /**
+     * Forces the records that were appended to disk unless the records up to an end were already forced.
+     *
+     * @param end number of bytes appended that need to be on disk
+     */
+    private void sync(final long end) throws IOException {
+
+        synchronized (syncLock) {
+            if (synced >= end) {
+                return;
+            }
+            final FileChannel channel;
+            final long target;
+            synchronized (this) {
+                channel = active;
+                target = written;
+            }
+            if (synced >= target) {
+                return;
+            }
+            try {
+                channel.force(false);
+            } catch (final ClosedChannelException e) {
+                // the segment was rolled or closed which forces it
+            }
+            synced = target;
+        }
+    }
+
+    /**
+     * Rewrites the segments before the active segment into one compacted segment with only the latest record of each
+     * version that was committed, leaving out the versions that are dropped or deleted.  The active segment is rolled first so all the
+     * records appended before this is called are included.  The records of the transactions that were in flight when
+     * it was rolled are kept as they are, as their commit records will be in the later segments, and the records of
+     * the other transactions that were not committed are left out.  Records are still appended while this runs.
+     *
+     * @param idOf gets the version id of a payload
+     * @param drop tests if the latest record of a version is dropped
+     * @return number of versions dropped
+     */
+    long compact(
+      final Function<ByteBuffer, UUID> idOf,
+      final Predicate<ByteBuffer> drop) {
+
+        synchronized (compactLock) {
+            try {
+                final long last;
+                final Set<Long> carried;
+                synchronized (this) {
+                    if (active.size() > 0) {
+                        roll();
+                    }
+                    last = activeSequence - 1;
+                    carried = new HashSet<>(inFlight);
+                }
+                if (last < 0) {
+                    return 0;
+                }
+                final List<Path> sealed = new ArrayList<>();
+                for (final Path segment : segments(directory)) {
+                    if (sequence(segment) <= last) {
+                        sealed.add(segment);
+                    }
+                }
+                final Map<UUID, ByteBuffer> latest = new LinkedHashMap<>();
+                // a version is always appended before it is deleted, so all its records are in the sealed segments
+                final Replay committed = new Replay(payload -> {
+                    final UUID id = idOf.apply(payload.duplicate());
+                    latest.remove(id);
+                    latest.put(id, payload);
+                }, latest::remove);
+                for (final Path segment : sealed) {
+                    read(segment, committed);
+                }
+
+                long dropped = 0;
+                final Path temp = directory.resolve(String.format("%020d%s", last, TEMP_SUFFIX));
+                try (FileChannel out = FileChannel.open(temp, CREATE_NEW, WRITE)) {
+                    final CRC32 crc = new CRC32();
+                    final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                    for (final ByteBuffer payload : latest.values()) {
+                        if (drop.test(payload.duplicate())) {
+                            ++dropped;
+                            continue;
+                        }
+                        writeVersion(out, header, crc, NO_TRANSACTION, payload);
+                    }
+                    for (final Map.Entry<Long, List<ByteBuffer>> transaction : committed.pending.entrySet()) {
+                        if (carried.contains(transaction.getKey())) {
+                            for (final ByteBuffer record : transaction.getValue()) {
+                                final ByteBuffer copy = record.duplicate();
+                                while (copy.hasRemaining()) {
+                                    out.write(copy);
+                                }
+                            }
+                        }
+                    }
+                    out.force(true);
+                }
+                // the sealed segments are replaced once this is renamed, they are only deleted after
+                final Path compacted = directory.resolve(String.format("%020d%s", last, COMPACTED_SUFFIX));
+                Files.move(temp, compacted, ATOMIC_MOVE, REPLACE_EXISTING);
+                // the rename is on disk before any of the segments it replaces are deleted
+                syncDirectory(directory);
+                for (final Path segment : sealed) {
+                    if (!segment.equals(compacted)) {
+                        Files.delete(segment);
+                    }
+                }
+                log.debug("Compacted {} segments in {}, dropped {} versions", sealed.size(), directory, dropped);
+                return dropped;
+            } catch (final IOException e) {
+                throw new DataAccessResourceFailureException(String.format("Unable to compact the segments in %s", directory), e);
+            }
+        }
+    }
+
+    /**
+     * Forces the active segment to disk and closes it.
+     */
+    synchronized void close() {
+
+        try {
+            active.force(false);
+            active.close();
+        } catch (final IOException e) {
+            throw new DataAccessResourceFailureException(String.format("Unable to close the segments in %s", directory), e);
+        }
+    }
+
+    /**
+     * Forces the active segment to disk, closes it and opens the next one.  The caller must hold the lock of this.
+     */
+    private void roll() throws IOException {
+
+        active.force(false);
+        active.close();
+        ++activeSequence;
+        active = FileChannel.open(segment(directory, activeSequence), CREATE, WRITE, APPEND);
+        syncDirectory(directory);
+    }
+
+    /**
+     * Forces the entries of a directory to disk, so a segment that was created or renamed is not lost if the machine
+     * stops even though its records were forced.  Some platforms cannot open a directory, this is only logged there.
+     *
+     * @param directory directory
+     */
+    private static void syncDirectory(final Path directory) {
+
+        try (FileChannel channel = FileChannel.open(directory, READ)) {
+            channel.force(true);
+        } catch (final IOException e) {
+            log.debug("Unable to force {} to disk", directory, e);
+        }
+    }
+
+    /**
+     * Puts the header of a record.
+     *
+     * @param buffer buffer the header is put in
+     * @param crc CRC32 that is used to compute the checksum
+     * @param type type of the record
+     * @param transaction transaction of the record
+     * @param payload payload of the record, its position is not changed
+     */
+    private static void header(
+      final ByteBuffer buffer,
+      final CRC32 crc,
+      final byte type,
+      final long transaction,
+      final ByteBuffer payload) {
+
+        final int start = buffer.position();
+        buffer.putInt(payload.remaining())
+          .putInt(0)
+          .put(type)
+          .putLong(transaction);
+        crc.reset();
+        crc.update(buffer.duplicate().position(start + 8).limit(start + HEADER_BYTES));
+        crc.update(payload.duplicate());
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Writes a version record to a segment that is being compacted.
+     *
+     * @param out segment
+     * @param header buffer for the header
+     * @param crc CRC32 that is used to compute the checksum
+     * @param transaction transaction of the record
+     * @param payload payload of the record, its position is not changed
+     */
+    private static void writeVersion(
+      final FileChannel out,
+      final ByteBuffer header,
+      final CRC32 crc,
+      final long transaction,
+      final ByteBuffer payload) throws IOException {
+
+        header.clear();
+        header(header, crc, VERSION, transaction, payload);
+        header.flip();
+        final ByteBuffer[] record = {
+          header,
+          payload.duplicate()
+        };
+        while (record[1].hasRemaining()) {
+            out.write(record);
+        }
+    }
+
+    /**
+     * Reads the records of a segment until the end or the first record that is incomplete or fails its CRC.
+     *
+     * @param segment segment
+     * @param consumer receives each record
+     * @return number of bytes of complete records
+     */
+    private static long read(
+      final Path segment,
+      final Replay consumer) throws IOException {
+
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_BYTES) {
+            final int start = buffer.position();
+            final int length = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining() - (HEADER_BYTES - 8)) {
+                return start;
+            }
+            crc.reset();
+            crc.update(buffer.duplicate().limit(buffer.position() + HEADER_BYTES - 8 + length));
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+            final ByteBuffer record = buffer.duplicate().position(start).slice();
+            record.limit(HEADER_BYTES + length);
+            consumer.accept(record);
+            buffer.position(start + HEADER_BYTES + length);
+        }
+        return buffer.position();
+    }
+
+    private static Path segment(
+      final Path directory,
+      final long sequence) {
+
+        return directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Lists the segments that are replayed, the latest compacted segment followed by the segments after it.  The
+     * segments it replaces are deleted, they are only there if the process stopped while they were being deleted.
+     *
+     * @param directory directory of the segments
+     * @return segments in the order they are replayed
+     */
+    private static List<Path> segments(final Path directory) throws IOException {
+
+        final List<Path> compacted = list(directory, COMPACTED_SUFFIX);
+        final List<Path> segments = list(directory, SEGMENT_SUFFIX);
+        if (compacted.isEmpty()) {
+            return segments;
+        }
+        final Path latest = compacted.get(compacted.size() - 1);
+        final long replaced = sequence(latest);
+        final List<Path> replayed = new ArrayList<>();
+        replayed.add(latest);
+        for (final Path segment : compacted.subList(0, compacted.size() - 1)) {
+            Files.delete(segment);
+        }
+        for (final Path segment : segments) {
+            if (sequence(segment) > replaced) {
+                replayed.add(segment);
+            } else {
+                log.warn("Deleting {} as it was replaced by {}", segment, latest);
+                Files.delete(segment);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * @param directory directory of the segments
+     * @param suffix suffix of the files
+     * @return files with the suffix in the order of their sequence numbers
+     */
+    private static List<Path> list(
+      final Path directory,
+      final String suffix) throws IOException {
+
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + suffix)) {
+            segments.forEach(files::add);
+        }
+        // the sequence numbers are zero padded so the names sort in the same order
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * @param segment segment
+     * @return sequence number of the segment
+     */
+    private static long sequence(final Path segment) {
+
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * Passes on the records that were committed in the order they were committed.  The records that were not in a
+     * transaction are passed on when they are read, and the records of a transaction when its commit record is read.
+     */
+    private static final class Replay {
+
+        /**
+         * Receives the version ids of the delete records that were committed.
+         */
+        private final Consumer<UUID> delete;
+
+        /**
+         * Last transaction that was read.
+         */
+        private long lastTransaction;
+
+        /**
+         * Records of the transactions that have not been committed yet by transaction, in the order they were read.
+         */
+        private final Map<Long, List<ByteBuffer>> pending = new LinkedHashMap<>();
+
+        /**
+         * Receives the payloads of the version records that were committed.
+         */
+        private final Consumer<ByteBuffer> replay;
+
+        Replay(
+          final Consumer<ByteBuffer> replay,
+          final Consumer<UUID> delete) {
+
+            this.replay = replay;
+            this.delete = delete;
+        }
+
+        /**
+         * @param record record including its header
+         */
+        void accept(final ByteBuffer record) {
+
+            final byte type = record.get(8);
+            final long transaction = record.getLong(9);
+            lastTransaction = Math.max(lastTransaction, transaction);
+            if (type == COMMIT) {
+                final List<ByteBuffer> records = pending.remove(transaction);
+                if (records != null) {
+                    records.forEach(this::apply);
+                }
+            } else if (transaction == NO_TRANSACTION) {
+                apply(record);
+            } else {
+                pending.computeIfAbsent(transaction, k -> new ArrayList<>()).add(record);
+            }
+        }
+
+        private void apply(final ByteBuffer record) {
+
+            final ByteBuffer payload = record.duplicate().position(HEADER_BYTES).slice();
+            if (record.get(8) == DELETE) {
+                delete.accept(new UUID(payload.getLong(0), payload.getLong(8)));
+            } else {
+                replay.accept(payload);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,162 @@
+package net.trajano.temporal.domain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Stores the versions of the {@link InMemoryTemporalRepository} repositories in append-only segment files so they are
+ * kept when the application restarts.  Each entity class has its own directory of segments under {@code
+ * temporal.segment.directory} which is replayed into memory when its repository starts.  The segments are compacted
+ * when superseded versions are archived, which can be scheduled with {@code temporal.segment.compaction-millis}.
+ * <p>
+ * By default the records of a save are forced to disk before the save returns, with concurrent saves sharing a force.
+ * If {@code temporal.segment.sync-millis} is set they are forced on that interval instead, so the saves in that
+ * interval can be lost if the machine rather than the process stops.
+ */
+@Slf4j
+public class TemporalSegmentStorage {
+
+    /**
+     * Compacts the segments on this interval, {@code 0} to only compact them when {@link
+     * TemporalRepository#archiveSuperseded(Class)} is called.
+     */
+    @Value("${temporal.segment.compaction-millis:0}")
+    private long compactionMillis;
+
+    /**
+     * Directory the entity segment directories are in.
+     */
+    @Value("${temporal.segment.directory:segments}")
+    private String directory;
+
+    /**
+     * Logs that are open.
+     */
+    private final List<TemporalSegmentLog> logs = new CopyOnWriteArrayList<>();
+
+    /**
+     * Size at which a segment is rolled.
+     */
+    @Value("${temporal.segment.max-bytes:67108864}")
+    private long maxSegmentBytes;
+
+    /**
+     * Forces the segments to disk and compacts them, {@code null} if neither is scheduled.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Forces the segments to disk on this interval, {@code 0} to force them on every save.
+     */
+    @Value("${temporal.segment.sync-millis:0}")
+    private long syncMillis;
+
+    /**
+     * Schedules forcing the segments to disk if it is not done on every save and creates the scheduler for the
+     * compactions if they are scheduled.
+     */
+    @PostConstruct
+    void start() {
+
+        if (syncMillis > 0 || compactionMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "temporal-segment");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (syncMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the scheduled work and closes the logs that are still open.
+     */
+    @PreDestroy
+    void stop() {
+
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        logs.forEach(this::close);
+    }
+
+    /**
+     * Opens the log of an entity class.
+     *
+     * @param entityName entity name, this is the name of the directory
+     * @param replay receives the payload of each version record in the order they were committed
+     * @param delete receives the version id of each delete record in the order they were committed
+     * @return log
+     */
+    TemporalSegmentLog open(
+      final String entityName,
+      final Consumer<ByteBuffer> replay,
+      final Consumer<UUID> delete) {
+
+        final TemporalSegmentLog segmentLog = TemporalSegmentLog.open(Paths.get(directory, entityName), maxSegmentBytes, syncMillis <= 0, replay, delete);
+        logs.add(segmentLog);
+        return segmentLog;
+    }
+
+    /**
+     * Closes a log.
+     *
+     * @param segmentLog log
+     */
+    void close(final TemporalSegmentLog segmentLog) {
+
+        if (logs.remove(segmentLog)) {
+            segmentLog.close();
+        }
+    }
+
+    /**
+     * Schedules the compaction of a log.  A failure is logged so the next run is still scheduled.
+     *
+     * @param compaction compacts the log
+     * @return scheduled compaction, {@code null} if compactions are not scheduled
+     */
+    ScheduledFuture<?> scheduleCompaction(final Runnable compaction) {
+
+        if (compactionMillis <= 0) {
+            return null;
+        }
+        return scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                compaction.run();
+            } catch (final RuntimeException e) {
+                log.warn("Unable to compact the segments", e);
+            }
+        }, compactionMillis, compactionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Forces the logs to disk.  A failure is logged so the next run is still scheduled.
+     */
+    private void sync() {
+
+        for (final TemporalSegmentLog segmentLog : logs) {
+            try {
+                segmentLog.sync();
+            } catch (final RuntimeException e) {
+                log.warn("Unable to force the segments to disk", e);
+            }
+        }
+    }
+
+}
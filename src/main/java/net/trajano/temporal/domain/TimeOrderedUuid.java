@@ -0,0 +1,70 @@
+package net.trajano.temporal.domain;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time ordered version 7 style UUIDs.  The most significant 48 bits are the Unix time in milliseconds followed
+ * by the version and a 12 bit counter so the UUIDs generated by this JVM are strictly increasing even within the same
+ * millisecond.  The least significant bits are random.
+ * <p>
+ * When more than 4096 UUIDs are generated in a millisecond the counter carries into the timestamp, so the timestamp may
+ * run slightly ahead of the clock rather than going backwards.  The state is updated with a compare and set so there is
+ * no lock.
+ * <p>
+ * As the timestamp is non-zero these UUIDs sort after {@link TemporalRepositoryImpl#NOT_SUPERSEDED} and the
+ * temporarily superseded sentinel both as {@link UUID#compareTo(UUID)} and as big endian bytes in the database.
+ */
+public final class TimeOrderedUuid {
+
+    private static final long COUNTER_BITS = 12;
+
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    /**
+     * Timestamp in milliseconds shifted left by the counter bits combined with the counter.
+     */
+    private static final AtomicLong STATE = new AtomicLong();
+
+    private TimeOrderedUuid() {
+
+    }
+
+    /**
+     * Gets the timestamp of a UUID generated by this class.
+     *
+     * @param uuid time ordered UUID
+     * @return milliseconds since the epoch
+     */
+    public static long getTimestamp(final UUID uuid) {
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+
+    /**
+     * Generates the next UUID.
+     *
+     * @return time ordered UUID
+     */
+    public static UUID next() {
+        final long now = System.currentTimeMillis();
+        long previous;
+        long next;
+        do {
+            previous = STATE.get();
+            if (now > previous >>> COUNTER_BITS) {
+                next = now << COUNTER_BITS;
+            } else {
+                next = previous + 1;
+            }
+        } while (!STATE.compareAndSet(previous, next));
+
+        final long mostSignificantBits = (next >>> COUNTER_BITS) << 16
+          | 0x7000L
+          | next & COUNTER_MASK;
+        final long leastSignificantBits = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL
+          | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+}
@@ -0,0 +1,202 @@
+package net.trajano.temporal.domain;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * An in-process cache of temporal entity timelines.  A timeline is the set of versions of a key that are not
+ * superseded ordered by effective on so the version at any time can be resolved with a floor lookup.  The number of
+ * keys kept is bounded and the least recently used timeline is evicted first.
+ * <p>
+ * The cached entities are copies that are not managed by any persistence context, and the repository returns a copy
+ * of them to each caller, so a caller can modify what it is given without changing the cache.
+ * <p>
+ * A key that is saved in a transaction is neither read from nor put in the cache by that transaction until it
+ * completes, so the transaction sees its own saves and other callers never see them before they are committed.
+ * <p>
+ * The hit, miss and eviction counts and the size are exposed as {@code temporal.cache.*} meters.
+ */
+@Component
+@ConditionalOnProperty(
+  prefix = "temporal.cache",
+  name = "enabled",
+  havingValue = "true"
+)
+public class TimelineCache implements
+  MeterBinder {
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * Incremented on every invalidation.  A timeline that was loaded while an invalidation took place is not cached as
+     * it may have been read before the change was made.
+     */
+    private long invalidationCount = 0;
+
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Timelines keyed by entity class and key.  Access must be synchronized on the map.
+     */
+    private final Map<List<Object>, NavigableMap<?, ?>> timelines;
+
+    public TimelineCache(@Value("${temporal.cache.maximum-keys:10000}") final int maximumKeys) {
+        timelines = new LinkedHashMap<List<Object>, NavigableMap<?, ?>>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<List<Object>, NavigableMap<?, ?>> eldest) {
+                if (size() > maximumKeys) {
+                    evictionCount.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        FunctionCounter.builder("temporal.cache.hits", this, TimelineCache::getHitCount)
+          .description("Number of timelines found in the cache")
+          .register(registry);
+        FunctionCounter.builder("temporal.cache.misses", this, TimelineCache::getMissCount)
+          .description("Number of timelines loaded into the cache")
+          .register(registry);
+        FunctionCounter.builder("temporal.cache.evictions", this, TimelineCache::getEvictionCount)
+          .description("Number of timelines evicted from the cache")
+          .register(registry);
+        Gauge.builder("temporal.cache.size", this, TimelineCache::getSize)
+          .description("Number of timelines in the cache")
+          .register(registry);
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public int getSize() {
+        synchronized (timelines) {
+            return timelines.size();
+        }
+    }
+
+    /**
+     * Gets the timeline for a key.  If it is not in the cache the loader is invoked outside of the lock.  If the key was
+     * saved in the current transaction the loaded timeline is returned without using the cache.
+     *
+     * @param resultType entity class
+     * @param key lookup key
+     * @param loader loads the timeline from the data store
+     * @param <T> temporal type
+     * @param <O> entity type
+     * @return timeline
+     */
+    @SuppressWarnings("unchecked")
+    <T, O> NavigableMap<T, O> getTimeline(
+      final Class<O> resultType,
+      final Object key,
+      final Supplier<NavigableMap<T, O>> loader) {
+
+        final List<Object> cacheKey = Arrays.asList(resultType, key);
+        final Set<?> writtenKeys = (Set<?>) TransactionSynchronizationManager.getResource(this);
+        if (writtenKeys != null && writtenKeys.contains(cacheKey)) {
+            return Collections.unmodifiableNavigableMap(loader.get());
+        }
+        final long invalidationCountAtLoad;
+        synchronized (timelines) {
+            final NavigableMap<T, O> cached = (NavigableMap<T, O>) timelines.get(cacheKey);
+            if (cached != null) {
+                hitCount.increment();
+                return cached;
+            }
+            invalidationCountAtLoad = invalidationCount;
+        }
+        missCount.increment();
+        final NavigableMap<T, O> loaded = Collections.unmodifiableNavigableMap(loader.get());
+        synchronized (timelines) {
+            if (invalidationCountAtLoad == invalidationCount) {
+                timelines.put(cacheKey, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Removes all the timelines from the cache.
+     */
+    public void clear() {
+        synchronized (timelines) {
+            ++invalidationCount;
+            timelines.clear();
+        }
+    }
+
+    /**
+     * Invalidates the timelines for the keys.  If there is an active transaction the keys bypass the cache in that
+     * transaction, and the timelines are invalidated again after it completes so readers that have loaded the timeline
+     * before the commit do not keep stale data.
+     *
+     * @param resultType entity class
+     * @param keys lookup keys
+     */
+    void invalidate(
+      final Class<?> resultType,
+      final Collection<?> keys) {
+
+        final List<List<Object>> cacheKeys = new ArrayList<>(keys.size());
+        for (final Object key : keys) {
+            cacheKeys.add(Arrays.asList(resultType, key));
+        }
+        invalidateNow(cacheKeys);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<List<Object>> writtenKeys = (Set<List<Object>>) TransactionSynchronizationManager.getResource(this);
+        if (writtenKeys == null) {
+            final Set<List<Object>> transactionKeys = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, transactionKeys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TimelineCache.this);
+                    invalidateNow(transactionKeys);
+                }
+            });
+            writtenKeys = transactionKeys;
+        }
+        writtenKeys.addAll(cacheKeys);
+    }
+
+    private void invalidateNow(final Collection<List<Object>> cacheKeys) {
+        synchronized (timelines) {
+            ++invalidationCount;
+            for (final List<Object> cacheKey : cacheKeys) {
+                timelines.remove(cacheKey);
+            }
+        }
+    }
+
+}
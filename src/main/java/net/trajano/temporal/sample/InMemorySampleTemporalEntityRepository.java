@@ -0,0 +1,41 @@
+package net.trajano.temporal.sample;
+
+import net.trajano.temporal.domain.InMemoryTemporalRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link SampleTemporalEntityRepository} that keeps the versions in memory, this is used with the {@code memory}
+ * profile.  The {@link org.springframework.data.repository.CrudRepository} saves are temporal saves.
+ */
+public class InMemorySampleTemporalEntityRepository extends
+  InMemoryTemporalRepository<String, LocalDate, SampleTemporalEntity> implements
+  SampleTemporalEntityRepository {
+
+    public InMemorySampleTemporalEntityRepository() {
+        super(SampleTemporalEntity.class, LocalDate::now);
+    }
+
+    /**
+     * Saves the entity as a new version with {@link #saveTemporal(SampleTemporalEntity)}.
+     */
+    @Override
+    public <E extends SampleTemporalEntity> E save(final E entity) {
+        saveTemporal(entity);
+        return entity;
+    }
+
+    /**
+     * Saves the entities as new versions with {@link #saveAllTemporal(Iterable)}.
+     */
+    @Override
+    public <E extends SampleTemporalEntity> Iterable<E> saveAll(final Iterable<E> entities) {
+        final List<E> saved = new ArrayList<>();
+        entities.forEach(saved::add);
+        saveAllTemporal(new ArrayList<>(saved));
+        return saved;
+    }
+
+}
@@ -28,6 +28,11 @@ import java.util.concurrent.ConcurrentHashMap;
         "supersededBy"
       }
     )
+  },
+  indexes = {
+    @Index(
+      columnList = "recordedAt, id"
+    )
   }
 )
 public class SampleTemporalEntity extends TemporalEntity<String, LocalDate> {
@@ -49,6 +54,10 @@ public class SampleTemporalEntity extends TemporalEntity<String, LocalDate> {
 
     private String property;
 
+    /**
+     * Additional attributes stored in a collection table.  As it is fetched eagerly the repository lookups fetch it in
+     * the same select as the entity.
+     */
     @ElementCollection(
       fetch = FetchType.EAGER
     )
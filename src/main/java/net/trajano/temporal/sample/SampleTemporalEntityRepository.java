@@ -1,12 +1,17 @@
 package net.trajano.temporal.sample;
 
+import net.trajano.temporal.domain.TemporalProjection;
 import net.trajano.temporal.domain.TemporalRepository;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface SampleTemporalEntityRepository
@@ -15,11 +20,43 @@ public interface SampleTemporalEntityRepository
   TemporalRepository<String, LocalDate, SampleTemporalEntity> {
 
     default Optional<SampleTemporalEntity> findByKey(String key) {
-        return findByKeyAt(key, LocalDate.now(), SampleTemporalEntity.class);
+        return findCurrentByKey(key, SampleTemporalEntity.class);
     }
 
     default Optional<SampleTemporalEntity> findByKeyAt(String key, LocalDate at) {
         return findByKeyAt(key, at, SampleTemporalEntity.class);
     }
 
+    default Map<String, SampleTemporalEntity> findByKeys(Collection<String> keys) {
+        return findByKeysAt(keys, LocalDate.now(), SampleTemporalEntity.class);
+    }
+
+    default Map<String, SampleTemporalEntity> findByKeysAt(Collection<String> keys, LocalDate at) {
+        return findByKeysAt(keys, at, SampleTemporalEntity.class);
+    }
+
+    default Optional<String> findVersionTagAt(String key, LocalDate at) {
+        return findVersionTagAt(key, at, SampleTemporalEntity.class);
+    }
+
+    default Optional<TemporalProjection> findFieldsByKeyAt(String key, LocalDate at, Collection<String> fields) {
+        return findFieldsByKeyAt(key, at, fields, SampleTemporalEntity.class);
+    }
+
+    default Stream<SampleTemporalEntity> findHistory(String key, LocalDate from, LocalDate to, boolean includeSuperseded) {
+        return findHistory(key, from, to, includeSuperseded, SampleTemporalEntity.class);
+    }
+
+    default long rollForwardCurrentView() {
+        return rollForwardCurrentView(SampleTemporalEntity.class);
+    }
+
+    default Stream<SampleTemporalEntity> findChanged(Instant since, UUID afterId, int limit) {
+        return findChanged(since, afterId, limit, SampleTemporalEntity.class);
+    }
+
+    default Stream<SampleTemporalEntity> findSnapshotAt(LocalDate at) {
+        return findSnapshotAt(at, SampleTemporalEntity.class);
+    }
+
 }
@@ -2,39 +2,186 @@ package net.trajano.temporal.web;
 
 import net.trajano.temporal.anemic.AnemicTemporal;
 import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.domain.TemporalChange;
+import net.trajano.temporal.domain.TemporalChangeFeed;
+import net.trajano.temporal.domain.TemporalProjection;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/anemic")
 public class AnemicTemporalController {
 
+    @Autowired
+    private TemporalChangeFeed changeFeed;
+
+    @Autowired
+    private ConditionalGet conditionalGet;
+
+    @Autowired
+    private RepositoryExecutor executor;
+
+    @Autowired
+    private TemporalImporter importer;
+
     @Autowired
     private AnemicTemporalRepository repository;
 
+    @GetMapping(
+      value = "/changed",
+      produces = NdjsonConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<AnemicTemporal> changed(
+      @RequestParam(
+        name = "since",
+        required = false
+      ) Instant since,
+      @RequestParam(
+        name = "after",
+        required = false
+      ) UUID after,
+      @RequestParam(
+        name = "limit",
+        defaultValue = "1000"
+      ) int limit
+    ) {
+        if (after != null && since == null) {
+            return Flux.error(new ServerWebInputException("since is required with after"));
+        }
+        return executor.stream(() -> repository.findChanged(since, after, limit));
+    }
+
+    @GetMapping(
+      value = "/changes",
+      produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public Flux<ServerSentEvent<TemporalChange>> changes(
+      @RequestHeader(
+        name = "Last-Event-ID",
+        required = false
+      ) Long lastEventId,
+      @RequestParam(
+        name = "since",
+        required = false
+      ) Long since
+    ) {
+        return changeFeed.changes(AnemicTemporal.class, lastEventId != null ? lastEventId : since)
+          .map(change -> ServerSentEvent.builder(change)
+            .id(Long.toString(change.getSequence()))
+            .event(change.isReset() ? "reset" : null)
+            .build());
+    }
+
     @GetMapping("/{key}")
-    public Mono<AnemicTemporal> getByKey(
+    public Mono<?> getByKey(
       @PathVariable final String key,
       @RequestParam(
         name = "at",
         required = false
-      ) Instant at
+      ) Instant at,
+      @RequestParam(
+        name = "fields",
+        required = false
+      ) List<String> fields,
+      final ServerWebExchange exchange
     ) {
-        final Optional<AnemicTemporal> optional;
-        if (at == null) {
-            optional = repository.findByKey(key);
-        } else {
-            optional = repository.findByKeyAt(key, at);
-        }
-        if (optional.isPresent()) {
-            return Mono.just(optional.get());
-        } else {
-            throw new NotFoundException();
+        final Instant now = Instant.now();
+        final Instant lookupAt = at == null ? now : at;
+        if (fields != null) {
+            return conditionalGet.get(
+              exchange,
+              lookupAt.isBefore(now),
+              () -> repository.findVersionTagAt(key, lookupAt),
+              () -> repository.findFieldsByKeyAt(key, lookupAt, fields),
+              TemporalProjection::getVersionTag)
+              .map(TemporalProjection::getFields)
+              .onErrorMap(InvalidDataAccessApiUsageException.class, e -> new ServerWebInputException(e.getMessage()));
         }
+        return conditionalGet.get(
+          exchange,
+          lookupAt.isBefore(now),
+          () -> repository.findVersionTagAt(key, lookupAt),
+          () -> at == null ? repository.findByKey(key) : repository.findByKeyAt(key, lookupAt));
+    }
+
+    @GetMapping(
+      value = "/{key}/history",
+      produces = NdjsonConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<AnemicTemporal> history(
+      @PathVariable final String key,
+      @RequestParam(
+        name = "from",
+        required = false
+      ) Instant from,
+      @RequestParam(
+        name = "to",
+        required = false
+      ) Instant to,
+      @RequestParam(
+        name = "includeSuperseded",
+        defaultValue = "false"
+      ) boolean includeSuperseded
+    ) {
+        return executor.stream(() -> repository.findHistory(key, from, to, includeSuperseded));
+    }
+
+    @GetMapping(
+      value = "/snapshot",
+      produces = NdjsonConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<AnemicTemporal> snapshot(
+      @RequestParam(
+        name = "at",
+        required = false
+      ) Instant at
+    ) {
+        final Instant snapshotAt = at == null ? Instant.now() : at;
+        return executor.stream(() -> repository.findSnapshotAt(snapshotAt));
+    }
+
+    @PostMapping(
+      value = "/import",
+      consumes = NdjsonConfiguration.APPLICATION_NDJSON_VALUE,
+      produces = NdjsonConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<ImportResult> importVersions(@RequestBody final Flux<AnemicTemporal> versions) {
+        return importer.importVersions(
+          versions.doOnNext(object -> {
+              if (object.getEffectiveOn() == null) {
+                  object.setEffectiveOn(Instant.now());
+              }
+          }),
+          repository);
+    }
+
+    @PostMapping("/lookup")
+    public Mono<Map<String, AnemicTemporal>> lookup(
+      @RequestBody final List<String> keys,
+      @RequestParam(
+        name = "at",
+        required = false
+      ) Instant at
+    ) {
+        return executor.call(() -> {
+            if (at == null) {
+                return repository.findByKeys(keys);
+            } else {
+                return repository.findByKeysAt(keys, at);
+            }
+        });
     }
 
     @PostMapping("/{key}")
@@ -45,8 +192,7 @@ public class AnemicTemporalController {
         if (object.getEffectiveOn() == null) {
             object.setEffectiveOn(Instant.now());
         }
-        AnemicTemporal saved = repository.saveTemporal(object);
-        return Mono.justOrEmpty(saved);
+        return executor.call(() -> repository.saveTemporal(object));
     }
 
 }
@@ -0,0 +1,100 @@
+package net.trajano.temporal.web;
+
+import net.trajano.temporal.domain.TemporalEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Handles conditional GET requests for a version of a temporal entity.  The ETag is the version tag so a request with
+ * {@code If-None-Match} is answered with {@code 304 Not Modified} from a lookup of the version tag without loading the
+ * entity.  A lookup at an explicit time in the past is given a long lived {@code Cache-Control} as it only changes if
+ * a correction is saved, a lookup of the current version is only cached briefly.
+ */
+@Component
+public class ConditionalGet {
+
+    private final CacheControl currentCacheControl;
+
+    @Autowired
+    private RepositoryExecutor executor;
+
+    private final CacheControl historicalCacheControl;
+
+    public ConditionalGet(
+      @Value("${temporal.http.current-max-age-seconds:5}") final long currentMaxAgeSeconds,
+      @Value("${temporal.http.historical-max-age-seconds:86400}") final long historicalMaxAgeSeconds) {
+
+        currentCacheControl = CacheControl.maxAge(currentMaxAgeSeconds, TimeUnit.SECONDS);
+        historicalCacheControl = CacheControl.maxAge(historicalMaxAgeSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Gets a version.
+     *
+     * @param exchange exchange
+     * @param historical {@code true} if the lookup is at an explicit time in the past
+     * @param versionTag finds the version tag
+     * @param find finds the version
+     * @param <O> temporal entity type
+     * @return the version, empty if it was not modified
+     */
+    public <O extends TemporalEntity<?, ?>> Mono<O> get(
+      final ServerWebExchange exchange,
+      final boolean historical,
+      final Callable<Optional<String>> versionTag,
+      final Callable<Optional<O>> find) {
+
+        return get(exchange, historical, versionTag, find, o -> TemporalEntity.versionTag(o.getId(), o.getEffectiveUntil()));
+    }
+
+    /**
+     * Gets a representation of a version.
+     *
+     * @param exchange exchange
+     * @param historical {@code true} if the lookup is at an explicit time in the past
+     * @param versionTag finds the version tag
+     * @param find finds the representation of the version
+     * @param versionTagOf gets the version tag of the representation
+     * @param <R> representation type
+     * @return the representation, empty if it was not modified
+     */
+    public <R> Mono<R> get(
+      final ServerWebExchange exchange,
+      final boolean historical,
+      final Callable<Optional<String>> versionTag,
+      final Callable<Optional<R>> find,
+      final Function<R, String> versionTagOf) {
+
+        final HttpHeaders responseHeaders = exchange.getResponse().getHeaders();
+        final String cacheControl = (historical ? historicalCacheControl : currentCacheControl).getHeaderValue();
+        final Mono<Boolean> notModified = exchange.getRequest().getHeaders().getIfNoneMatch().isEmpty()
+          ? Mono.just(false)
+          : executor.call(versionTag)
+          .map(tag -> tag.isPresent() && exchange.checkNotModified(tag.get()));
+
+        return notModified.flatMap(unchanged -> {
+            if (unchanged) {
+                responseHeaders.setCacheControl(cacheControl);
+                return Mono.empty();
+            }
+            return executor.call(find)
+              .flatMap(Mono::justOrEmpty)
+              .switchIfEmpty(Mono.error(NotFoundException::new))
+              .doOnNext(o -> {
+                  responseHeaders.setETag("\"" + versionTagOf.apply(o) + "\"");
+                  responseHeaders.setCacheControl(cacheControl);
+              });
+        });
+    }
+
+}
@@ -0,0 +1,38 @@
+package net.trajano.temporal.web;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * Result of a line of an import.  A line that was saved has the id of the new version, a line that was not saved has
+ * the error instead.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public final class ImportResult {
+
+    /**
+     * Line number starting from 1.
+     */
+    private final long line;
+
+    /**
+     * Key of the version, {@code null} if the line could not be read.
+     */
+    private final Object key;
+
+    /**
+     * Id of the saved version, {@code null} if the line was not saved.
+     */
+    private final UUID id;
+
+    /**
+     * Reason the line was not saved, {@code null} if it was saved.
+     */
+    private final String error;
+
+}
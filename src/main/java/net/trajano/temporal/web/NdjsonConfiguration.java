@@ -0,0 +1,51 @@
+package net.trajano.temporal.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+import java.util.Arrays;
+
+/**
+ * Registers newline delimited JSON as a streaming media type for the Jackson codecs.  This version of WebFlux only
+ * streams {@code application/stream+json}.
+ */
+@Configuration
+public class NdjsonConfiguration {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    /**
+     * This is ordered after the Spring Boot Jackson codec customizer so it replaces its codecs.
+     *
+     * @param objectMapper object mapper configured by Spring Boot
+     * @return codec customizer
+     */
+    @Bean
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public CodecCustomizer ndjsonCodecCustomizer(final ObjectMapper objectMapper) {
+        return configurer -> {
+            final Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(
+              objectMapper,
+              MediaType.APPLICATION_JSON,
+              new MediaType("application", "*+json"),
+              APPLICATION_NDJSON);
+            encoder.setStreamingMediaTypes(Arrays.asList(MediaType.APPLICATION_STREAM_JSON, APPLICATION_NDJSON));
+            configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+            configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(
+              objectMapper,
+              MediaType.APPLICATION_JSON,
+              new MediaType("application", "*+json"),
+              APPLICATION_NDJSON));
+        };
+    }
+
+}
@@ -0,0 +1,85 @@
+package net.trajano.temporal.web;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Runs blocking repository calls on a dedicated bounded thread pool so they are never executed on the event loop.
+ * The pool size defaults to the size of the connection pool as there is no benefit to having more threads waiting for
+ * a connection.  When the pool and its queue are full the request fails with a {@code 503 Service Unavailable}
+ * rather than queueing without limit.
+ */
+@Component
+public class RepositoryExecutor implements
+  DisposableBean {
+
+    /**
+     * Thread name prefix for the repository threads.
+     */
+    public static final String THREAD_NAME_PREFIX = "temporal-repository-";
+
+    private final Scheduler scheduler;
+
+    public RepositoryExecutor(
+      @Value("${temporal.repository-executor.pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") final int poolSize,
+      @Value("${temporal.repository-executor.queue-capacity:1000}") final int queueCapacity) {
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+          poolSize,
+          poolSize,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(queueCapacity),
+          r -> {
+              final Thread thread = new Thread(r, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+          },
+          new ThreadPoolExecutor.AbortPolicy());
+        scheduler = Schedulers.fromExecutorService(executor, "temporal-repository");
+    }
+
+    /**
+     * Calls the blocking operation on the repository thread pool.
+     *
+     * @param callable blocking operation
+     * @param <R> result type
+     * @return result of the operation, empty if the operation returns {@code null}.
+     */
+    public <R> Mono<R> call(final Callable<R> callable) {
+        return Mono.fromCallable(callable)
+          .subscribeOn(scheduler)
+          .onErrorMap(RejectedExecutionException.class, e -> new ServiceUnavailableException());
+    }
+
+    /**
+     * Streams the results of a blocking operation.  The stream is opened, read and closed on the repository thread
+     * pool and is only read as fast as the subscriber requests so the results are not buffered in memory.
+     *
+     * @param callable opens the stream
+     * @param <R> result type
+     * @return results of the stream
+     */
+    public <R> Flux<R> stream(final Callable<Stream<R>> callable) {
+        return Flux.using(callable, Flux::fromStream, Stream::close)
+          .subscribeOn(scheduler)
+          .cancelOn(scheduler)
+          .onErrorMap(RejectedExecutionException.class, e -> new ServiceUnavailableException());
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+}
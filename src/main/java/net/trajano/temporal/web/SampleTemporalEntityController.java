@@ -1,40 +1,189 @@
 package net.trajano.temporal.web;
 
+import net.trajano.temporal.domain.TemporalChange;
+import net.trajano.temporal.domain.TemporalChangeFeed;
+import net.trajano.temporal.domain.TemporalProjection;
 import net.trajano.temporal.sample.SampleTemporalEntity;
 import net.trajano.temporal.sample.SampleTemporalEntityRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/sample")
 public class SampleTemporalEntityController {
 
+    @Autowired
+    private TemporalChangeFeed changeFeed;
+
+    @Autowired
+    private ConditionalGet conditionalGet;
+
+    @Autowired
+    private RepositoryExecutor executor;
+
+    @Autowired
+    private TemporalImporter importer;
+
     @Autowired
     private SampleTemporalEntityRepository repository;
 
+    @GetMapping(
+      value = "/changed",
+      produces = NdjsonConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<SampleTemporalEntity> changed(
+      @RequestParam(
+        name = "since",
+        required = false
+      ) Instant since,
+      @RequestParam(
+        name = "after",
+        required = false
+      ) UUID after,
+      @RequestParam(
+        name = "limit",
+        defaultValue = "1000"
+      ) int limit
+    ) {
+        if (after != null && since == null) {
+            return Flux.error(new ServerWebInputException("since is required with after"));
+        }
+        return executor.stream(() -> repository.findChanged(since, after, limit));
+    }
+
+    @GetMapping(
+      value = "/changes",
+      produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public Flux<ServerSentEvent<TemporalChange>> changes(
+      @RequestHeader(
+        name = "Last-Event-ID",
+        required = false
+      ) Long lastEventId,
+      @RequestParam(
+        name = "since",
+        required = false
+      ) Long since
+    ) {
+        return changeFeed.changes(SampleTemporalEntity.class, lastEventId != null ? lastEventId : since)
+          .map(change -> ServerSentEvent.builder(change)
+            .id(Long.toString(change.getSequence()))
+            .event(change.isReset() ? "reset" : null)
+            .build());
+    }
+
     @GetMapping("/{key}")
-    public Mono<SampleTemporalEntity> getByKey(
+    public Mono<?> getByKey(
       @PathVariable final String key,
       @RequestParam(
         name = "at",
         required = false
-      ) LocalDate at
+      ) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate at,
+      @RequestParam(
+        name = "fields",
+        required = false
+      ) List<String> fields,
+      final ServerWebExchange exchange
     ) {
-        final Optional<SampleTemporalEntity> optional;
-        if (at == null) {
-            optional = repository.findByKey(key);
-        } else {
-            optional = repository.findByKeyAt(key, at);
-        }
-        if (optional.isPresent()) {
-            return Mono.just(optional.get());
-        } else {
-            throw new NotFoundException();
+        final LocalDate today = LocalDate.now();
+        final LocalDate lookupAt = at == null ? today : at;
+        if (fields != null) {
+            return conditionalGet.get(
+              exchange,
+              lookupAt.isBefore(today),
+              () -> repository.findVersionTagAt(key, lookupAt),
+              () -> repository.findFieldsByKeyAt(key, lookupAt, fields),
+              TemporalProjection::getVersionTag)
+              .map(TemporalProjection::getFields)
+              .onErrorMap(InvalidDataAccessApiUsageException.class, e -> new ServerWebInputException(e.getMessage()));
         }
+        return conditionalGet.get(
+          exchange,
+          lookupAt.isBefore(today),
+          () -> repository.findVersionTagAt(key, lookupAt),
+          () -> at == null ? repository.findByKey(key) : repository.findByKeyAt(key, lookupAt));
+    }
+
+    @GetMapping(
+      value = "/{key}/history",
+      produces = NdjsonConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<SampleTemporalEntity> history(
+      @PathVariable final String key,
+      @RequestParam(
+        name = "from",
+        required = false
+      ) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(
+        name = "to",
+        required = false
+      ) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+      @RequestParam(
+        name = "includeSuperseded",
+        defaultValue = "false"
+      ) boolean includeSuperseded
+    ) {
+        return executor.stream(() -> repository.findHistory(key, from, to, includeSuperseded));
+    }
+
+    @GetMapping(
+      value = "/snapshot",
+      produces = NdjsonConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<SampleTemporalEntity> snapshot(
+      @RequestParam(
+        name = "at",
+        required = false
+      ) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate at
+    ) {
+        final LocalDate snapshotAt = at == null ? LocalDate.now() : at;
+        return executor.stream(() -> repository.findSnapshotAt(snapshotAt));
+    }
+
+    @PostMapping(
+      value = "/import",
+      consumes = NdjsonConfiguration.APPLICATION_NDJSON_VALUE,
+      produces = NdjsonConfiguration.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<ImportResult> importVersions(@RequestBody final Flux<SampleTemporalEntity> versions) {
+        return importer.importVersions(
+          versions.doOnNext(object -> {
+              if (object.getEffectiveOn() == null) {
+                  object.setEffectiveOn(LocalDate.now());
+              }
+          }),
+          repository);
+    }
+
+    @PostMapping("/lookup")
+    public Mono<Map<String, SampleTemporalEntity>> lookup(
+      @RequestBody final List<String> keys,
+      @RequestParam(
+        name = "at",
+        required = false
+      ) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate at
+    ) {
+        return executor.call(() -> {
+            if (at == null) {
+                return repository.findByKeys(keys);
+            } else {
+                return repository.findByKeysAt(keys, at);
+            }
+        });
     }
 
     @PostMapping("/{key}")
@@ -45,8 +194,7 @@ public class SampleTemporalEntityController {
         if (object.getEffectiveOn() == null) {
             object.setEffectiveOn(LocalDate.now());
         }
-        SampleTemporalEntity saved = repository.saveTemporal(object);
-        return Mono.justOrEmpty(saved);
+        return executor.call(() -> repository.saveTemporal(object));
     }
 
 }
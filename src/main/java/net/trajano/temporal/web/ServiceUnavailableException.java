@@ -0,0 +1,10 @@
+package net.trajano.temporal.web;
+
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+@ResponseStatus(value = SERVICE_UNAVAILABLE, reason = "Service unavailable")
+class ServiceUnavailableException extends RuntimeException {
+
+}
@@ -0,0 +1,131 @@
+package net.trajano.temporal.web;
+
+import lombok.AllArgsConstructor;
+import net.trajano.temporal.domain.TemporalEntity;
+import net.trajano.temporal.domain.TemporalRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.Serializable;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports versions from a request body that is decoded incrementally.  The versions are saved in chunks, each chunk is
+ * saved in a single transaction with {@link TemporalRepository#saveAllTemporal(Iterable)}.  The next chunk is only
+ * requested from the body after the previous chunk is saved so at most a couple of chunks are held in memory
+ * regardless of the size of the upload.
+ * <p>
+ * There is a result for every line.  A line that fails validation is not saved and does not affect the rest of its
+ * chunk.  If saving a chunk fails the chunk is rolled back and every line in it has the error.  If the body cannot be
+ * read the import stops with an error result for the line that could not be read, the chunks before it remain saved.
+ */
+@Component
+public class TemporalImporter {
+
+    private final int chunkSize;
+
+    @Autowired
+    private RepositoryExecutor executor;
+
+    @Autowired
+    private Validator validator;
+
+    public TemporalImporter(@Value("${temporal.import.chunk-size:1000}") final int chunkSize) {
+
+        this.chunkSize = chunkSize;
+    }
+
+    private static String errorMessage(final Throwable e) {
+
+        return NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+    }
+
+    /**
+     * Imports versions.
+     *
+     * @param versions versions decoded from the request body
+     * @param repository repository
+     * @param <S> key type
+     * @param <T> temporal type
+     * @param <O> temporal entity type
+     * @return result of each line in the order of the lines
+     */
+    public <S extends Serializable, T extends Temporal & Comparable<? super T>, O extends TemporalEntity<S, T>> Flux<ImportResult> importVersions(
+      final Flux<O> versions,
+      final TemporalRepository<S, T, O> repository) {
+
+        return Flux.defer(() -> {
+            final AtomicLong lineCount = new AtomicLong();
+            return versions
+              .map(version -> new Line<>(lineCount.incrementAndGet(), version, null))
+              .onErrorResume(
+                e -> e instanceof ServerWebInputException || e instanceof DecodingException,
+                e -> Mono.just(new Line<>(lineCount.incrementAndGet(), null, errorMessage(e))));
+        })
+          .buffer(chunkSize)
+          .concatMap(chunk -> importChunk(chunk, repository), 1);
+    }
+
+    private <S extends Serializable, T extends Temporal & Comparable<? super T>, O extends TemporalEntity<S, T>> Flux<ImportResult> importChunk(
+      final List<Line<O>> chunk,
+      final TemporalRepository<S, T, O> repository) {
+
+        final List<Line<O>> valid = new ArrayList<>(chunk.size());
+        for (final Line<O> line : chunk) {
+            if (line.error == null) {
+                final Set<ConstraintViolation<O>> violations = validator.validate(line.version);
+                if (!violations.isEmpty()) {
+                    final ConstraintViolation<O> violation = violations.iterator().next();
+                    line.error = violation.getPropertyPath() + " " + violation.getMessage();
+                } else {
+                    valid.add(line);
+                }
+            }
+        }
+
+        final Mono<String> failure = valid.isEmpty()
+          ? Mono.empty()
+          : executor.<String>call(() -> {
+            final List<O> objects = new ArrayList<>(valid.size());
+            for (final Line<O> line : valid) {
+                objects.add(line.version);
+            }
+            repository.saveAllTemporal(objects);
+            return null;
+        })
+          .onErrorResume(e -> !(e instanceof ServiceUnavailableException), e -> Mono.just(errorMessage(e)));
+
+        return failure
+          .doOnNext(error -> valid.forEach(line -> line.error = error))
+          .thenMany(Flux.fromIterable(chunk))
+          .map(line -> new ImportResult(
+            line.number,
+            line.version == null ? null : line.version.getKey(),
+            line.error == null ? line.version.getId() : null,
+            line.error));
+    }
+
+    @AllArgsConstructor
+    private static final class Line<O> {
+
+        private final long number;
+
+        private final O version;
+
+        private String error;
+
+    }
+
+}
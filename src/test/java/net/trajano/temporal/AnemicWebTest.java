@@ -1,6 +1,9 @@
 package net.trajano.temporal;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.domain.TemporalChangeFeed;
+import net.trajano.temporal.web.NdjsonConfiguration;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,9 +12,25 @@ import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWeb
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertNotNull;
@@ -30,9 +49,18 @@ public class AnemicWebTest {
     @LocalServerPort
     private int port;
 
+    @Autowired
+    private TemporalChangeFeed changeFeed;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private WebTestClient webTestClient;
+
     @Test
     public void contextLoads() {
         assertNotNull(restTemplate);
@@ -67,4 +95,114 @@ public class AnemicWebTest {
         assertThat(found.getKey(), is("saveAndLoad"));
     }
 
+    private List<AnemicTemporal> getSnapshot(final String query) throws IOException {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Arrays.asList(NdjsonConfiguration.APPLICATION_NDJSON));
+        final ResponseEntity<String> response = restTemplate.exchange(
+          String.format("http://localhost:%d/anemic/snapshot%s", port, query),
+          HttpMethod.GET,
+          new HttpEntity<>(headers),
+          String.class);
+        assertThat(response.getStatusCodeValue(), is(200));
+
+        final List<AnemicTemporal> snapshot = new ArrayList<>();
+        if (response.getBody() != null) {
+            for (final String line : response.getBody().split("\\n")) {
+                if (!line.isEmpty()) {
+                    snapshot.add(objectMapper.readValue(line, AnemicTemporal.class));
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    @Test
+    public void snapshot() throws IOException {
+        final Instant beforeSave = Instant.now().minusSeconds(60);
+        for (final String key : Arrays.asList("snapshotB", "snapshotA")) {
+            AnemicTemporal sample = new AnemicTemporal();
+            sample.setAdditionalAttribute("hello", key);
+            restTemplate.postForObject(
+              String.format("http://localhost:%d/anemic/%s", port, key),
+              sample,
+              AnemicTemporal.class);
+        }
+
+        final List<AnemicTemporal> snapshot = getSnapshot("");
+        final List<String> keys = new ArrayList<>();
+        for (final AnemicTemporal o : snapshot) {
+            keys.add(o.getKey());
+        }
+        final List<String> sortedKeys = new ArrayList<>(keys);
+        sortedKeys.sort(null);
+        assertThat(keys, is(sortedKeys));
+        final int a = keys.indexOf("snapshotA");
+        assertThat(keys.get(a + 1), is("snapshotB"));
+        assertThat(snapshot.get(a).getAdditionalAttribute("hello"), is("snapshotA"));
+
+        for (final AnemicTemporal o : getSnapshot("?at=" + beforeSave)) {
+            assertThat(o.getKey().startsWith("snapshot"), is(false));
+        }
+    }
+
+    @Test
+    public void changes() {
+        final long after = changeFeed.getSequence();
+        final AnemicTemporal saved = restTemplate.postForObject(
+          String.format("http://localhost:%d/anemic/changes-key", port),
+          new AnemicTemporal(),
+          AnemicTemporal.class);
+
+        final List<ServerSentEvent<Map<String, Object>>> events = webTestClient.get()
+          .uri("/anemic/changes?since={since}", after)
+          .accept(MediaType.TEXT_EVENT_STREAM)
+          .exchange()
+          .expectStatus().isOk()
+          .returnResult(new ParameterizedTypeReference<ServerSentEvent<Map<String, Object>>>() {
+
+          })
+          .getResponseBody()
+          .take(1)
+          .collectList()
+          .block(Duration.ofSeconds(10));
+        assertThat(events.get(0).id(), is(Long.toString(after + 1)));
+        assertThat(events.get(0).data().get("id"), is(saved.getId().toString()));
+        assertThat(events.get(0).data().get("key"), is("changes-key"));
+    }
+
+    @Test
+    public void changesReset() {
+        final List<ServerSentEvent<Map<String, Object>>> events = webTestClient.get()
+          .uri("/anemic/changes")
+          .header("Last-Event-ID", "1")
+          .accept(MediaType.TEXT_EVENT_STREAM)
+          .exchange()
+          .expectStatus().isOk()
+          .returnResult(new ParameterizedTypeReference<ServerSentEvent<Map<String, Object>>>() {
+
+          })
+          .getResponseBody()
+          .take(1)
+          .collectList()
+          .block(Duration.ofSeconds(10));
+        assertThat(events.get(0).event(), is("reset"));
+        assertThat(events.get(0).id(), is(Long.toString(changeFeed.getSequence())));
+    }
+
+    @Test
+    public void changed() {
+        webTestClient.get()
+          .uri("/anemic/changed?since={since}", Instant.now())
+          .accept(NdjsonConfiguration.APPLICATION_NDJSON)
+          .exchange()
+          .expectStatus().isOk()
+          .expectHeader().contentTypeCompatibleWith(NdjsonConfiguration.APPLICATION_NDJSON);
+
+        webTestClient.get()
+          .uri("/anemic/changed?after={after}", UUID.randomUUID())
+          .accept(NdjsonConfiguration.APPLICATION_NDJSON)
+          .exchange()
+          .expectStatus().isBadRequest();
+    }
+
 }
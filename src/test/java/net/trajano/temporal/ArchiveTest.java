@@ -0,0 +1,95 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false,
+  properties = {
+    "temporal.archive.batch-size=2",
+    "temporal.archive.include-in-history=true"
+  }
+)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ArchiveTest {
+
+    private static final Instant D1 = Instant.parse("2019-01-01T00:00:00Z");
+
+    private static final Instant D2 = Instant.parse("2019-02-01T00:00:00Z");
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    @Autowired
+    private SampleTemporalEntityRepository sampleRepo;
+
+    private void save(
+      final Instant effectiveOn,
+      final String value) {
+
+        final AnemicTemporal o = new AnemicTemporal();
+        o.setAdditionalAttribute("value", value);
+        repo.saveTemporal(o, "archived", effectiveOn);
+    }
+
+    private List<String> history(final boolean includeSuperseded) {
+        try (Stream<AnemicTemporal> history = repo.findHistory("archived", null, null, includeSuperseded)) {
+            return history.map(o -> o.getAdditionalAttribute("value"))
+              .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void archive() {
+        save(D1, "1");
+        save(D1, "1a");
+        save(D1, "1b");
+        save(D2, "2");
+        save(D2, "2a");
+
+        assertTrue(repo.archiveSuperseded() >= 3);
+        assertEquals(0L, em.createQuery("select count(e) from AnemicTemporal e where e.supersededBy <> :supersededBy")
+          .setParameter("supersededBy", new UUID(0, 0))
+          .getSingleResult());
+        assertEquals(0, repo.archiveSuperseded());
+
+        final List<String> all = history(true);
+        assertEquals(5, all.size());
+        assertTrue(all.subList(0, 3).containsAll(Arrays.asList("1", "1a", "1b")));
+        assertTrue(all.subList(3, 5).containsAll(Arrays.asList("2", "2a")));
+        assertEquals(Arrays.asList("1b", "2a"), history(false));
+        assertEquals("2a", repo.findByKey("archived").get().getAdditionalAttribute("value"));
+    }
+
+    @Test(expected = DataAccessException.class)
+    public void collectionTablesNotSupported() {
+        sampleRepo.archiveSuperseded(SampleTemporalEntity.class);
+    }
+
+}
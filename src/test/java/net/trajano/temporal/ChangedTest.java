@@ -0,0 +1,131 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false,
+  properties = {
+    "temporal.changed.settle-millis=0"
+  }
+)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ChangedTest {
+
+    private static final Instant D1 = Instant.parse("2019-01-01T00:00:00Z");
+
+    private static final Instant D2 = Instant.parse("2019-02-01T00:00:00Z");
+
+    private static final Instant D3 = Instant.parse("2019-03-01T00:00:00Z");
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    private List<AnemicTemporal> changed(
+      final Instant since,
+      final UUID afterId,
+      final int limit) {
+
+        try (Stream<AnemicTemporal> changed = repo.findChanged(since, afterId, limit)) {
+            return changed.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Reads all the changes after a cursor a page at a time.
+     */
+    private List<AnemicTemporal> drain(
+      final Instant since,
+      final int limit) {
+
+        final List<AnemicTemporal> all = new ArrayList<>();
+        Instant cursorAt = since;
+        UUID cursorId = null;
+        List<AnemicTemporal> page;
+        do {
+            page = changed(cursorAt, cursorId, limit);
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                cursorAt = page.get(page.size() - 1).getRecordedAt();
+                cursorId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == limit);
+        return all;
+    }
+
+    private AnemicTemporal save(
+      final String key,
+      final Instant effectiveOn) {
+
+        return repo.saveTemporal(new AnemicTemporal(), key, effectiveOn);
+    }
+
+    @Test
+    public void paged() {
+        final Instant since = Instant.now();
+        final AnemicTemporal a = save("changedA", D1);
+        final AnemicTemporal b = save("changedB", D1);
+        final AnemicTemporal c = save("changedA", D1);
+
+        final List<AnemicTemporal> changed = drain(since, 2);
+        assertEquals(3, changed.size());
+        assertEquals(new HashSet<>(Arrays.asList(a.getId(), b.getId(), c.getId())),
+          changed.stream().map(AnemicTemporal::getId).collect(Collectors.toSet()));
+        // b was not changed after it was saved, a was superseded by c in the same save
+        assertEquals(b.getId(), changed.get(0).getId());
+        final AnemicTemporal superseded = changed.stream().filter(o -> o.getId().equals(a.getId())).findFirst().get();
+        assertEquals(c.getId(), superseded.getSupersededBy());
+        assertEquals(c.getRecordedAt(), superseded.getRecordedAt());
+        for (int i = 1; i < changed.size(); ++i) {
+            assertFalse(changed.get(i).getRecordedAt().isBefore(changed.get(i - 1).getRecordedAt()));
+        }
+    }
+
+    @Test
+    public void effectiveUntilChange() {
+        final AnemicTemporal x = save("changedUntil", D2);
+        final List<AnemicTemporal> initial = drain(x.getRecordedAt(), 100);
+        final AnemicTemporal last = initial.get(initial.size() - 1);
+
+        final AnemicTemporal earlier = save("changedUntil", D1);
+        assertEquals(Collections.singletonList(earlier.getId()),
+          drain(last.getRecordedAt(), 100).stream()
+            .filter(o -> !o.getId().equals(last.getId()))
+            .map(AnemicTemporal::getId)
+            .collect(Collectors.toList()));
+
+        final Instant beforeLater = Instant.now();
+        final AnemicTemporal b = new AnemicTemporal();
+        b.setKey("changedUntil");
+        b.setEffectiveOn(D3);
+        repo.saveAllTemporal(Collections.singletonList(b));
+        final List<AnemicTemporal> afterLater = drain(beforeLater, 100);
+        assertEquals(new HashSet<>(Arrays.asList(x.getId(), b.getId())),
+          afterLater.stream().map(AnemicTemporal::getId).collect(Collectors.toSet()));
+        assertEquals(D3, afterLater.stream().filter(o -> o.getId().equals(x.getId())).findFirst().get().getEffectiveUntil());
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void afterIdRequiresSince() {
+        repo.findChanged(null, UUID.randomUUID(), 10).close();
+    }
+
+}
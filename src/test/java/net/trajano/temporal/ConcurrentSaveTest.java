@@ -0,0 +1,124 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false
+)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ConcurrentSaveTest {
+
+    private static final Instant[] EFFECTIVE_ON = {
+      Instant.parse("2019-01-01T00:00:00Z"),
+      Instant.parse("2019-02-01T00:00:00Z"),
+      Instant.parse("2019-03-01T00:00:00Z")
+    };
+
+    private static final UUID NOT_SUPERSEDED = new UUID(0, 0);
+
+    private static final List<String> KEYS = Arrays.asList("hotA", "hotB", "hotC", "hotD");
+
+    private static final int SAVES_PER_THREAD = 50;
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    @Test
+    public void hotKeys() throws Exception {
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; ++t) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < SAVES_PER_THREAD; ++i) {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    final AnemicTemporal o = new AnemicTemporal();
+                    o.setAdditionalAttribute("saved", thread + ":" + i);
+                    if (i % 10 == 0) {
+                        final List<AnemicTemporal> batch = new ArrayList<>();
+                        for (final String key : KEYS) {
+                            final AnemicTemporal b = new AnemicTemporal();
+                            b.setKey(key);
+                            b.setEffectiveOn(EFFECTIVE_ON[random.nextInt(EFFECTIVE_ON.length)]);
+                            batch.add(b);
+                        }
+                        repo.saveAllTemporal(batch);
+                    }
+                    repo.saveTemporal(o, KEYS.get(random.nextInt(KEYS.size())), EFFECTIVE_ON[random.nextInt(EFFECTIVE_ON.length)]);
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        for (final Future<?> future : futures) {
+            // rethrows the first failure of a save
+            future.get();
+        }
+
+        int total = 0;
+        for (final String key : KEYS) {
+            final List<AnemicTemporal> versions;
+            try (Stream<AnemicTemporal> history = repo.findHistory(key, null, null, true)) {
+                versions = history.collect(Collectors.toList());
+            }
+            total += versions.size();
+            assertConsistent(versions);
+        }
+        assertEquals(THREADS * SAVES_PER_THREAD + THREADS * SAVES_PER_THREAD / 10 * KEYS.size(), total);
+    }
+
+    private void assertConsistent(final List<AnemicTemporal> versions) {
+
+        final Map<UUID, AnemicTemporal> byId = versions.stream()
+          .collect(Collectors.toMap(AnemicTemporal::getId, v -> v));
+        final List<AnemicTemporal> current = versions.stream()
+          .filter(v -> v.getSupersededBy().equals(NOT_SUPERSEDED))
+          .sorted(Comparator.comparing(AnemicTemporal::getEffectiveOn))
+          .collect(Collectors.toList());
+
+        // one current version per effective on with effective until pointing at the next one
+        assertEquals(current.size(), current.stream().map(AnemicTemporal::getEffectiveOn).distinct().count());
+        for (int i = 0; i < current.size(); ++i) {
+            final Instant expectedUntil = i + 1 < current.size() ? current.get(i + 1).getEffectiveOn() : null;
+            assertEquals(expectedUntil, current.get(i).getEffectiveUntil());
+        }
+
+        // every superseded version is superseded by a distinct version of the same effective on
+        final Set<UUID> supersededBy = new HashSet<>();
+        for (final AnemicTemporal v : versions) {
+            if (v.getSupersededBy().equals(NOT_SUPERSEDED)) {
+                continue;
+            }
+            final AnemicTemporal replacement = byId.get(v.getSupersededBy());
+            assertNotNull(replacement);
+            assertEquals(v.getEffectiveOn(), replacement.getEffectiveOn());
+            assertTrue(supersededBy.add(v.getSupersededBy()));
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.InstantType;
+import org.hibernate.type.UUIDBinaryType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false,
+  properties = {
+    "temporal.current-view.enabled=true",
+    "temporal.current-view.roll-forward-millis=0"
+  }
+)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CurrentViewTest {
+
+    private static final Instant D1 = Instant.parse("2019-01-01T00:00:00Z");
+
+    private static final Instant D2 = Instant.parse("2019-02-01T00:00:00Z");
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    @Autowired
+    private SampleTemporalEntityRepository sampleRepo;
+
+    private AnemicTemporal save(
+      final String key,
+      final Instant effectiveOn,
+      final String value) {
+
+        final AnemicTemporal o = new AnemicTemporal();
+        o.setAdditionalAttribute("value", value);
+        return repo.saveTemporal(o, key, effectiveOn);
+    }
+
+    /**
+     * @return version id and changes at of the current view row of the key
+     */
+    private Object[] row(final String key) {
+
+        final List<?> rows = em.createNativeQuery("select version_id, changes_at from anemic_temporal_current where key = ?1")
+          .unwrap(NativeQuery.class)
+          .addScalar("version_id", UUIDBinaryType.INSTANCE)
+          .addScalar("changes_at", InstantType.INSTANCE)
+          .setParameter(1, key)
+          .getResultList();
+        return rows.isEmpty() ? null : (Object[]) rows.get(0);
+    }
+
+    @Test
+    public void current() {
+        final AnemicTemporal v1 = save("cv-current", D1, "1");
+        assertNotNull(row("cv-current"));
+        final AnemicTemporal v2 = save("cv-current", D2, "2");
+        save("cv-current", D1, "1a");
+
+        assertEquals(v2.getId(), repo.findByKey("cv-current").get().getId());
+        assertNull(row("cv-current")[1]);
+        assertNotEquals(v1.getId(), v2.getId());
+        assertFalse(repo.findByKey("cv-missing").isPresent());
+    }
+
+    @Test
+    public void rollForward() throws Exception {
+        final AnemicTemporal past = save("cv-roll", D1, "past");
+        final Instant effectiveOn = Instant.now().plusMillis(500);
+        final AnemicTemporal future = save("cv-roll", effectiveOn, "future");
+        save("cv-future", effectiveOn, "future");
+
+        assertEquals(past.getId(), repo.findByKey("cv-roll").get().getId());
+        assertFalse(repo.findByKey("cv-future").isPresent());
+
+        Thread.sleep(600);
+        // due rows are looked up with the as-of query until they are rolled forward
+        assertEquals(future.getId(), repo.findByKey("cv-roll").get().getId());
+        assertTrue(repo.findByKey("cv-future").isPresent());
+
+        assertTrue(repo.rollForwardCurrentView() >= 2);
+        assertEquals(future.getId(), row("cv-roll")[0]);
+        assertNull(row("cv-roll")[1]);
+        assertEquals("future", repo.findByKey("cv-future").get().getAdditionalAttribute("value"));
+        assertEquals(0, repo.rollForwardCurrentView());
+    }
+
+    @Test
+    public void saveAll() {
+        final AnemicTemporal a1 = new AnemicTemporal();
+        a1.setKey("cv-all-a");
+        a1.setEffectiveOn(D1);
+        final AnemicTemporal a2 = new AnemicTemporal();
+        a2.setKey("cv-all-a");
+        a2.setEffectiveOn(D2);
+        final AnemicTemporal b = new AnemicTemporal();
+        b.setKey("cv-all-b");
+        b.setEffectiveOn(Instant.now().plusSeconds(3600));
+        repo.saveAllTemporal(Arrays.asList(a1, a2, b));
+
+        assertEquals(a2.getId(), row("cv-all-a")[0]);
+        assertEquals(b.getId(), row("cv-all-b")[0]);
+        assertEquals(a2.getId(), repo.findByKey("cv-all-a").get().getId());
+        assertFalse(repo.findByKey("cv-all-b").isPresent());
+    }
+
+    @Test
+    public void collectionTable() {
+        final SampleTemporalEntity o = new SampleTemporalEntity();
+        o.setAdditionalAttribute("a", "1");
+        final UUID id = sampleRepo.saveTemporal(o, "cv-sample", LocalDate.now().minusDays(1)).getId();
+
+        final SampleTemporalEntity found = sampleRepo.findByKey("cv-sample").get();
+        assertEquals(id, found.getId());
+        assertEquals("1", found.getAdditionalAttribute("a"));
+    }
+
+}
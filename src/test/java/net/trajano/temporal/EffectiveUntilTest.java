@@ -0,0 +1,113 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false
+)
+public class EffectiveUntilTest {
+
+    private static final LocalDate D1 = LocalDate.of(2019, 1, 1);
+
+    private static final LocalDate D2 = LocalDate.of(2019, 2, 1);
+
+    private static final LocalDate D3 = LocalDate.of(2019, 3, 1);
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private SampleTemporalEntityRepository repo;
+
+    private SampleTemporalEntity save(
+      final String key,
+      final LocalDate effectiveOn,
+      final String property) {
+
+        SampleTemporalEntity o = new SampleTemporalEntity();
+        o.setProperty(property);
+        repo.saveTemporal(o, key, effectiveOn);
+        em.flush();
+        return o;
+    }
+
+    private LocalDate untilOf(final UUID id) {
+        em.clear();
+        return repo.findById(id).get().getEffectiveUntil();
+    }
+
+    @Test
+    public void outOfOrder() {
+        final SampleTemporalEntity third = save("ooo", D3, "third");
+        final SampleTemporalEntity first = save("ooo", D1, "first");
+        final SampleTemporalEntity second = save("ooo", D2, "second");
+
+        assertEquals(D2, untilOf(first.getId()));
+        assertEquals(D3, untilOf(second.getId()));
+        assertNull(untilOf(third.getId()));
+        assertEquals("first", repo.findByKeyAt("ooo", D2.minusDays(1)).get().getProperty());
+        assertEquals("second", repo.findByKeyAt("ooo", D2).get().getProperty());
+        assertEquals("third", repo.findByKeyAt("ooo", D3.plusDays(1)).get().getProperty());
+        assertFalse(repo.findByKeyAt("ooo", D1.minusDays(1)).isPresent());
+    }
+
+    @Test
+    public void replacementKeepsUntil() {
+        save("replaced", D1, "first");
+        save("replaced", D2, "second");
+        final SampleTemporalEntity replacement = save("replaced", D1, "replacement");
+
+        assertEquals(D2, untilOf(replacement.getId()));
+        assertEquals("replacement", repo.findByKeyAt("replaced", D1).get().getProperty());
+        assertEquals("second", repo.findByKeyAt("replaced", D2).get().getProperty());
+    }
+
+    @Test
+    public void saveAll() {
+        final SampleTemporalEntity existing = save("bulkUntil", D2, "existing");
+
+        SampleTemporalEntity before = new SampleTemporalEntity();
+        before.setKey("bulkUntil");
+        before.setEffectiveOn(D1);
+        before.setProperty("before");
+        SampleTemporalEntity after = new SampleTemporalEntity();
+        after.setKey("bulkUntil");
+        after.setEffectiveOn(D3);
+        after.setProperty("after");
+        repo.saveAllTemporal(Arrays.asList(after, before));
+        em.flush();
+
+        assertEquals(D2, untilOf(before.getId()));
+        assertEquals(D3, untilOf(existing.getId()));
+        assertNull(untilOf(after.getId()));
+    }
+
+    @Test
+    public void backfill() {
+        final SampleTemporalEntity first = save("backfill", D1, "first");
+        final SampleTemporalEntity second = save("backfill", D2, "second");
+        em.createQuery("update SampleTemporalEntity e set e.effectiveUntil = null").executeUpdate();
+        assertNull(untilOf(first.getId()));
+
+        assertTrue(repo.backfillEffectiveUntil(SampleTemporalEntity.class) >= 2);
+        assertEquals(D2, untilOf(first.getId()));
+        assertNull(untilOf(second.getId()));
+    }
+
+}
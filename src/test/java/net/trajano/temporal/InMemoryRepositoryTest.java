@@ -0,0 +1,266 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.anemic.InMemoryAnemicTemporalRepository;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({
+  "test",
+  "memory"
+})
+@SpringBootTest(
+  webEnvironment = SpringBootTest.WebEnvironment.NONE,
+  classes = TemporalDataPatternApplication.class,
+  properties = {
+    "temporal.write-lock.timeout-millis=2000"
+  }
+)
+public class InMemoryRepositoryTest {
+
+    private static final Instant D1 = Instant.parse("2019-01-01T00:00:00Z");
+
+    private static final Instant D2 = Instant.parse("2019-02-01T00:00:00Z");
+
+    private static final UUID NOT_SUPERSEDED = new UUID(0, 0);
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    @Autowired
+    private SampleTemporalEntityRepository sampleRepo;
+
+    private AnemicTemporal save(
+      final String key,
+      final Instant effectiveOn,
+      final String value) {
+
+        final AnemicTemporal o = new AnemicTemporal();
+        o.setAdditionalAttribute("value", value);
+        return repo.saveTemporal(o, key, effectiveOn);
+    }
+
+    @Test
+    public void noDatabase() {
+        assertTrue(repo instanceof InMemoryAnemicTemporalRepository);
+        assertTrue(context.getBeansOfType(DataSource.class).isEmpty());
+    }
+
+    @Test
+    public void supersede() {
+        final AnemicTemporal v1 = save("mem-supersede", D1, "1");
+        final AnemicTemporal v2 = save("mem-supersede", D2, "2");
+        final AnemicTemporal read = repo.findByKeyAt("mem-supersede", D1).get();
+        assertEquals(D2, read.getEffectiveUntil());
+
+        final AnemicTemporal v1a = save("mem-supersede", D1, "1a");
+        assertEquals(v1a.getId(), repo.findByKeyAt("mem-supersede", D1).get().getId());
+        assertEquals(D2, v1a.getEffectiveUntil());
+        assertEquals(v2.getId(), repo.findByKey("mem-supersede").get().getId());
+        assertEquals(v1a.getId(), ((InMemoryAnemicTemporalRepository) repo).findById(v1.getId()).get().getSupersededBy());
+        // versions that were read are replaced rather than modified
+        assertNotEquals(v1a.getId(), read.getSupersededBy());
+        assertEquals(3, repo.findHistory("mem-supersede", null, null, true).count());
+        assertEquals("1a,2", repo.findHistory("mem-supersede", null, null, false)
+          .map(o -> o.getAdditionalAttribute("value"))
+          .collect(Collectors.joining(",")));
+    }
+
+    @Test
+    public void returnsCopies() {
+        final AnemicTemporal saved = save("mem-copies", D1, "saved");
+        final AnemicTemporal found = repo.findByKeyAt("mem-copies", D1).get();
+        assertEquals(saved.getId(), found.getId());
+        found.setAdditionalAttribute("value", "modified");
+        found.setSupersededBy(UUID.randomUUID());
+        repo.findHistory("mem-copies", null, null, true)
+          .forEach(o -> o.setAdditionalAttribute("value", "modified"));
+        ((InMemoryAnemicTemporalRepository) repo).findById(saved.getId()).get().setEffectiveOn(D2);
+
+        final AnemicTemporal foundAgain = repo.findByKeyAt("mem-copies", D1).get();
+        assertNotSame(found, foundAgain);
+        assertEquals(D1, foundAgain.getEffectiveOn());
+        assertEquals("saved", foundAgain.getAdditionalAttribute("value"));
+        assertEquals(NOT_SUPERSEDED, foundAgain.getSupersededBy());
+    }
+
+    @Test
+    public void sameHashKeys() throws Exception {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        final CyclicBarrier start = new CyclicBarrier(2);
+        final Callable<Void> forward = () -> saveAll(start, "Aa", "BB");
+        final Callable<Void> backward = () -> saveAll(start, "BB", "Aa");
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (final Future<Void> result : executor.invokeAll(Arrays.asList(forward, backward))) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2000, repo.findHistory("Aa", null, null, true).count());
+    }
+
+    /**
+     * Saves the keys in the order given 1000 times.
+     */
+    private Void saveAll(
+      final CyclicBarrier start,
+      final String... keys) throws Exception {
+
+        start.await();
+        for (int i = 0; i < 1000; ++i) {
+            final List<AnemicTemporal> objects = new ArrayList<>();
+            for (final String key : keys) {
+                final AnemicTemporal o = new AnemicTemporal();
+                o.setKey(key);
+                o.setEffectiveOn(D1);
+                objects.add(o);
+            }
+            repo.saveAllTemporal(objects);
+        }
+        return null;
+    }
+
+    @Test
+    public void rollback() throws Exception {
+        save("mem-rollback", D1, "committed");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            save("mem-rollback", D1, "rolled back");
+            save("mem-rollback-new", D1, "rolled back");
+            // changes are only visible to the transaction before it commits
+            assertEquals("rolled back", repo.findByKeyAt("mem-rollback", D1).get().getAdditionalAttribute("value"));
+            assertEquals("committed", elsewhere(() -> repo.findByKeyAt("mem-rollback", D1).get().getAdditionalAttribute("value")));
+            assertFalse(elsewhere(() -> repo.findByKeyAt("mem-rollback-new", D1).isPresent()));
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        final AnemicTemporal found = repo.findByKeyAt("mem-rollback", D1).get();
+        assertEquals("committed", found.getAdditionalAttribute("value"));
+        assertEquals(NOT_SUPERSEDED, found.getSupersededBy());
+        assertFalse(repo.findByKeyAt("mem-rollback-new", D1).isPresent());
+        assertEquals(1, repo.findHistory("mem-rollback", null, null, true).count());
+    }
+
+    @Test
+    public void commit() throws Exception {
+        save("mem-commit", D1, "1");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            final AnemicTemporal saved = save("mem-commit", D1, "1a");
+            assertEquals("1", elsewhere(() -> repo.findByKeyAt("mem-commit", D1).get().getAdditionalAttribute("value")));
+            assertEquals(1L, (long) elsewhere(() -> repo.findHistory("mem-commit", null, null, true).count()));
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+            assertEquals(saved.getId(), elsewhere(() -> repo.findByKeyAt("mem-commit", D1).get().getId()));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals("1,1a", repo.findHistory("mem-commit", null, null, true)
+          .map(o -> o.getAdditionalAttribute("value"))
+          .collect(Collectors.joining(",")));
+    }
+
+    @Test
+    public void crud() {
+        final SampleTemporalEntity v1 = new SampleTemporalEntity();
+        v1.setKey("mem-crud");
+        v1.setEffectiveOn(LocalDate.now().minusDays(2));
+        v1.setProperty("1");
+        assertSame(v1, sampleRepo.save(v1));
+        final SampleTemporalEntity v2 = new SampleTemporalEntity();
+        v2.setKey("mem-crud");
+        v2.setEffectiveOn(LocalDate.now().minusDays(1));
+        v2.setProperty("2");
+        final SampleTemporalEntity other = new SampleTemporalEntity();
+        other.setKey("mem-crud-other");
+        other.setEffectiveOn(LocalDate.now().minusDays(1));
+        sampleRepo.saveAll(Arrays.asList(v2, other));
+        assertEquals(LocalDate.now().minusDays(1), sampleRepo.findById(v1.getId()).get().getEffectiveUntil());
+        assertEquals("2", sampleRepo.findByKey("mem-crud").get().getProperty());
+
+        // like deleting the row the version before it keeps its effective until
+        sampleRepo.deleteById(v2.getId());
+        assertFalse(sampleRepo.existsById(v2.getId()));
+        assertEquals(v1.getId(), sampleRepo.findByKey("mem-crud").get().getId());
+        assertEquals(1, sampleRepo.findHistory("mem-crud", null, null, true).count());
+        try {
+            sampleRepo.deleteById(v2.getId());
+            fail();
+        } catch (final EmptyResultDataAccessException e) {
+            // the version no longer exists
+        }
+
+        sampleRepo.delete(v1);
+        assertFalse(sampleRepo.findByKey("mem-crud").isPresent());
+        sampleRepo.deleteAll(Arrays.asList(v1, other));
+        assertFalse(sampleRepo.findByKey("mem-crud-other").isPresent());
+        sampleRepo.saveTemporal(new SampleTemporalEntity(), "mem-crud", LocalDate.now());
+        sampleRepo.deleteAll();
+        assertEquals(0, sampleRepo.count());
+    }
+
+    @Test
+    public void deleteInTransaction() throws Exception {
+        final AnemicTemporal saved = save("mem-delete-tx", D1, "1");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ((InMemoryAnemicTemporalRepository) repo).deleteById(saved.getId());
+            assertFalse(repo.findByKeyAt("mem-delete-tx", D1).isPresent());
+            assertTrue(elsewhere(() -> repo.findByKeyAt("mem-delete-tx", D1).isPresent()));
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertEquals(saved.getId(), repo.findByKeyAt("mem-delete-tx", D1).get().getId());
+    }
+
+    /**
+     * Runs a lookup on another thread, outside of the transaction of this thread.
+     */
+    private static <V> V elsewhere(final Callable<V> lookup) throws Exception {
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(lookup).get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
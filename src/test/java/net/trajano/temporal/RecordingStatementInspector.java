@@ -0,0 +1,26 @@
+package net.trajano.temporal;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the names of the threads that prepare SQL statements.
+ */
+public class RecordingStatementInspector implements
+  StatementInspector {
+
+    private static final Set<String> THREAD_NAMES = ConcurrentHashMap.newKeySet();
+
+    public static Set<String> getThreadNames() {
+        return THREAD_NAMES;
+    }
+
+    @Override
+    public String inspect(final String sql) {
+        THREAD_NAMES.add(Thread.currentThread().getName());
+        return sql;
+    }
+
+}
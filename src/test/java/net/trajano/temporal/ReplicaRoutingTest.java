@@ -0,0 +1,103 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@SpringBootTest(
+  webEnvironment = SpringBootTest.WebEnvironment.NONE,
+  properties = {
+    "spring.datasource.url=jdbc:hsqldb:mem:primary",
+    "spring.datasource.username=sa",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "temporal.replica.url=jdbc:hsqldb:mem:replica",
+    "temporal.replica.username=sa",
+    "temporal.replica.read-your-writes-millis=60000"
+  }
+)
+public class ReplicaRoutingTest {
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource("jdbc:hsqldb:mem:primary", "sa", ""));
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource("jdbc:hsqldb:mem:replica", "sa", ""));
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    private static byte[] bytes(final UUID uuid) {
+        return ByteBuffer.allocate(16)
+          .putLong(uuid.getMostSignificantBits())
+          .putLong(uuid.getLeastSignificantBits())
+          .array();
+    }
+
+    /**
+     * Creates the tables of the primary in the replica as the replica is not really replicated.
+     */
+    @Before
+    public void replicaSchema() {
+        if (replica.queryForObject("select count(*) from information_schema.tables where table_name = 'ANEMIC_TEMPORAL'", Integer.class) > 0) {
+            return;
+        }
+        for (final String statement : primary.queryForList("script", String.class)) {
+            if (statement.startsWith("CREATE MEMORY TABLE") || statement.startsWith("CREATE INDEX")) {
+                replica.execute(statement);
+            }
+        }
+    }
+
+    private List<String> snapshotKeys() {
+        try (Stream<AnemicTemporal> snapshot = repo.findSnapshotAt(Instant.now())) {
+            return snapshot.map(AnemicTemporal::getKey)
+              .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void routing() {
+        repo.saveTemporal(new AnemicTemporal(), "routed", Instant.now().minusSeconds(60));
+        assertEquals(1, (int) primary.queryForObject("select count(*) from anemic_temporal where key = 'routed'", Integer.class));
+        assertEquals(0, (int) replica.queryForObject("select count(*) from anemic_temporal where key = 'routed'", Integer.class));
+
+        replica.update("insert into anemic_temporal (id, key, effective_on, recorded_at, superseded_by) values (?, ?, ?, ?, ?)",
+          bytes(UUID.randomUUID()),
+          "replicaOnly",
+          Timestamp.from(Instant.now().minusSeconds(60)),
+          Timestamp.from(Instant.now()),
+          bytes(new UUID(0, 0)));
+
+        // a key that was not written by this process is read from the replica
+        assertTrue(repo.findByKey("replicaOnly").isPresent());
+        assertTrue(repo.findVersionTagAt("replicaOnly", Instant.now()).isPresent());
+        // a key that was just written is read from the primary
+        assertTrue(repo.findByKey("routed").isPresent());
+        try (Stream<AnemicTemporal> history = repo.findHistory("routed", null, null, false)) {
+            assertEquals(1, history.count());
+        }
+
+        final List<String> snapshot = snapshotKeys();
+        assertTrue(snapshot.contains("replicaOnly"));
+        assertFalse(snapshot.contains("routed"));
+    }
+
+}
@@ -0,0 +1,73 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.domain.TimelineCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Instant;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@SpringBootTest(
+  webEnvironment = SpringBootTest.WebEnvironment.NONE,
+  properties = {
+    "spring.datasource.url=jdbc:hsqldb:mem:cachePrimary",
+    "spring.datasource.username=sa",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "temporal.cache.enabled=true",
+    "temporal.replica.url=jdbc:hsqldb:mem:cacheReplica",
+    "temporal.replica.username=sa"
+  }
+)
+public class ReplicaTimelineCacheTest {
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource("jdbc:hsqldb:mem:cachePrimary", "sa", ""));
+
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource("jdbc:hsqldb:mem:cacheReplica", "sa", ""));
+
+    @Autowired
+    private TimelineCache cache;
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    /**
+     * Creates the tables of the primary in the replica as the replica is not really replicated.
+     */
+    @Before
+    public void replicaSchema() {
+        if (replica.queryForObject("select count(*) from information_schema.tables where table_name = 'ANEMIC_TEMPORAL'", Integer.class) > 0) {
+            return;
+        }
+        for (final String statement : primary.queryForList("script", String.class)) {
+            if (statement.startsWith("CREATE MEMORY TABLE") || statement.startsWith("CREATE INDEX")) {
+                replica.execute(statement);
+            }
+        }
+    }
+
+    @Test
+    public void loadedFromPrimary() {
+        final Instant effectiveOn = Instant.now().minusSeconds(60);
+        final AnemicTemporal saved = repo.saveTemporal(new AnemicTemporal(), "behindReplica", effectiveOn);
+        // the replica has not caught up with the save
+        assertEquals(0, (int) replica.queryForObject("select count(*) from anemic_temporal where key = 'behindReplica'", Integer.class));
+
+        final long hits = cache.getHitCount();
+        assertEquals(saved.getId(), repo.findByKey("behindReplica").get().getId());
+        assertEquals(saved.getId(), repo.findByKeyAt("behindReplica", effectiveOn).get().getId());
+        assertEquals(hits + 1, cache.getHitCount());
+    }
+
+}
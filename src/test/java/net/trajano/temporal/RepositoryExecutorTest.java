@@ -0,0 +1,98 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.web.RepositoryExecutor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@AutoConfigureTestDatabase
+@SpringBootTest(
+  webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+  classes = TemporalDataPatternApplication.class,
+  properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=net.trajano.temporal.RecordingStatementInspector"
+)
+public class RepositoryExecutorTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    public void eventLoopNeverExecutesJdbc() {
+        final WebClient client = WebClient.create(String.format("http://localhost:%d", port));
+        RecordingStatementInspector.getThreadNames().clear();
+
+        final long completed = Flux.range(0, 500)
+          .flatMap(i -> {
+              final String key = "load" + (i % 20);
+              if (i % 5 == 0) {
+                  final SampleTemporalEntity sample = new SampleTemporalEntity();
+                  sample.setProperty("value" + i);
+                  return client.post()
+                    .uri("/sample/{key}", key)
+                    .syncBody(sample)
+                    .exchange()
+                    .flatMap(response -> response.bodyToMono(String.class));
+              } else {
+                  return client.get()
+                    .uri("/anemic/{key}", key)
+                    .exchange()
+                    .flatMap(response -> response.bodyToMono(String.class));
+              }
+          }, 64)
+          .count()
+          .block(Duration.ofMinutes(1));
+
+        assertThat(completed, is(500L));
+        assertFalse(RecordingStatementInspector.getThreadNames().isEmpty());
+        for (final String threadName : RecordingStatementInspector.getThreadNames()) {
+            assertTrue(threadName, threadName.startsWith(RepositoryExecutor.THREAD_NAME_PREFIX));
+        }
+    }
+
+    @Test
+    public void saturated() throws Exception {
+        final RepositoryExecutor executor = new RepositoryExecutor(1, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.call(() -> {
+                started.countDown();
+                return release.await(1, TimeUnit.MINUTES);
+            }).subscribe();
+            started.await();
+            executor.call(() -> "queued").subscribe();
+
+            try {
+                executor.call(() -> "rejected").block();
+                fail("expected rejection");
+            } catch (final RuntimeException e) {
+                final ResponseStatus status = AnnotationUtils.findAnnotation(e.getClass(), ResponseStatus.class);
+                assertNotNull(status);
+                assertThat(status.value(), is(HttpStatus.SERVICE_UNAVAILABLE));
+            }
+        } finally {
+            release.countDown();
+            executor.destroy();
+        }
+    }
+
+}
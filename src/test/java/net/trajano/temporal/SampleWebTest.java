@@ -1,6 +1,9 @@
 package net.trajano.temporal;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.web.NdjsonConfiguration;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,14 +12,24 @@ import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWeb
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.time.LocalDate;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
 @RunWith(SpringRunner.class)
@@ -32,6 +45,9 @@ public class SampleWebTest {
     @LocalServerPort
     private int port;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
     private TestRestTemplate restTemplate;
 
@@ -151,4 +167,239 @@ public class SampleWebTest {
 
     }
 
+    @Test
+    public void lookup() {
+        SampleTemporalEntity sample = new SampleTemporalEntity();
+        sample.setProperty("test");
+        restTemplate.postForObject(
+          String.format("http://localhost:%d/sample/lookupOne", port),
+          sample,
+          SampleTemporalEntity.class);
+        restTemplate.postForObject(
+          String.format("http://localhost:%d/sample/lookupTwo", port),
+          sample,
+          SampleTemporalEntity.class);
+
+        final Map<String, SampleTemporalEntity> found = restTemplate.exchange(
+          String.format("http://localhost:%d/sample/lookup", port),
+          HttpMethod.POST,
+          new HttpEntity<>(Arrays.asList("lookupOne", "lookupTwo", "lookupNotFound")),
+          new ParameterizedTypeReference<Map<String, SampleTemporalEntity>>() {
+          }).getBody();
+        assertThat(found.size(), is(2));
+        assertThat(found.get("lookupOne").getKey(), is("lookupOne"));
+        assertThat(found.get("lookupTwo").getProperty(), is("test"));
+
+        final Map<String, SampleTemporalEntity> foundYesterday = restTemplate.exchange(
+          String.format("http://localhost:%d/sample/lookup?at=%s", port, LocalDate.now().minusDays(1).toString()),
+          HttpMethod.POST,
+          new HttpEntity<>(Arrays.asList("lookupOne", "lookupTwo")),
+          new ParameterizedTypeReference<Map<String, SampleTemporalEntity>>() {
+          }).getBody();
+        assertThat(foundYesterday.size(), is(0));
+    }
+
+    private List<SampleTemporalEntity> getHistory(
+      final String key,
+      final String query) throws IOException {
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(Arrays.asList(NdjsonConfiguration.APPLICATION_NDJSON));
+        final ResponseEntity<String> response = restTemplate.exchange(
+          String.format("http://localhost:%d/sample/%s/history%s", port, key, query),
+          HttpMethod.GET,
+          new HttpEntity<>(headers),
+          String.class);
+        assertThat(response.getStatusCodeValue(), is(200));
+        assertThat(response.getHeaders().getContentType().isCompatibleWith(NdjsonConfiguration.APPLICATION_NDJSON), is(true));
+
+        final List<SampleTemporalEntity> history = new ArrayList<>();
+        if (response.getBody() != null) {
+            for (final String line : response.getBody().split("\n")) {
+                if (!line.isEmpty()) {
+                    history.add(objectMapper.readValue(line, SampleTemporalEntity.class));
+                }
+            }
+        }
+        return history;
+    }
+
+    @Test
+    public void history() throws IOException {
+        final LocalDate today = LocalDate.now();
+        for (int i = 3; i >= 1; --i) {
+            SampleTemporalEntity sample = new SampleTemporalEntity();
+            sample.setProperty("v" + i);
+            sample.setEffectiveOn(today.minusDays(i * 10));
+            restTemplate.postForObject(
+              String.format("http://localhost:%d/sample/history", port),
+              sample,
+              SampleTemporalEntity.class);
+        }
+        SampleTemporalEntity correction = new SampleTemporalEntity();
+        correction.setProperty("v2-corrected");
+        correction.setEffectiveOn(today.minusDays(20));
+        restTemplate.postForObject(
+          String.format("http://localhost:%d/sample/history", port),
+          correction,
+          SampleTemporalEntity.class);
+
+        final List<SampleTemporalEntity> history = getHistory("history", "");
+        assertThat(history.size(), is(3));
+        assertThat(history.get(0).getProperty(), is("v3"));
+        assertThat(history.get(0).getEffectiveUntil(), is(today.minusDays(20)));
+        assertThat(history.get(1).getProperty(), is("v2-corrected"));
+        assertThat(history.get(2).getProperty(), is("v1"));
+
+        assertThat(getHistory("history", "?includeSuperseded=true").size(), is(4));
+
+        final List<SampleTemporalEntity> range = getHistory("history", String.format("?from=%s&to=%s", today.minusDays(25), today.minusDays(10)));
+        assertThat(range.size(), is(2));
+        assertThat(range.get(0).getProperty(), is("v3"));
+        assertThat(range.get(1).getProperty(), is("v2-corrected"));
+
+        assertThat(getHistory("history", "?to=" + today.minusDays(30)).size(), is(0));
+    }
+
+    @Test
+    public void importVersions() throws IOException {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(NdjsonConfiguration.APPLICATION_NDJSON);
+        final String body = "{\"key\":\"import\",\"effectiveOn\":\"2019-01-01\",\"property\":\"first\"}\n"
+          + "{\"key\":\"import\",\"effectiveOn\":\"2019-02-01\",\"property\":\"second\"}\n"
+          + "{\"effectiveOn\":\"2019-03-01\",\"property\":\"no key\"}\n"
+          + "{\"key\":\"import\",\"effectiveOn\":\"2019-04-01\",\"property\":\"third\"}\n"
+          + "{\"key\":\"import\",\n";
+        final ResponseEntity<String> result = restTemplate.exchange(
+          String.format("http://localhost:%d/sample/import", port),
+          HttpMethod.POST,
+          new HttpEntity<>(body, headers),
+          String.class);
+        assertThat(result.getStatusCodeValue(), is(200));
+
+        final List<Map<String, Object>> lines = new ArrayList<>();
+        for (final String line : result.getBody().split("\n")) {
+            lines.add(objectMapper.readValue(line, new TypeReference<Map<String, Object>>() {
+
+            }));
+        }
+        assertThat(lines.size(), is(5));
+        for (int i = 0; i < lines.size(); ++i) {
+            assertThat(((Number) lines.get(i).get("line")).intValue(), is(i + 1));
+        }
+        assertNotNull(lines.get(0).get("id"));
+        assertThat(lines.get(0).get("key"), is("import"));
+        assertNull(lines.get(0).get("error"));
+        assertNull(lines.get(2).get("id"));
+        assertThat(lines.get(2).get("error"), is("key must not be null"));
+        assertNotNull(lines.get(3).get("id"));
+        assertNull(lines.get(4).get("id"));
+        assertNotNull(lines.get(4).get("error"));
+
+        final List<SampleTemporalEntity> history = getHistory("import", "");
+        assertThat(history.size(), is(3));
+        assertThat(history.get(0).getProperty(), is("first"));
+        assertThat(history.get(0).getEffectiveUntil(), is(LocalDate.of(2019, 2, 1)));
+        assertThat(history.get(2).getProperty(), is("third"));
+    }
+
+    private ResponseEntity<SampleTemporalEntity> getConditional(
+      final String query,
+      final String ifNoneMatch) {
+
+        final HttpHeaders headers = new HttpHeaders();
+        if (ifNoneMatch != null) {
+            headers.setIfNoneMatch(ifNoneMatch);
+        }
+        return restTemplate.exchange(
+          String.format("http://localhost:%d/sample/conditional%s", port, query),
+          HttpMethod.GET,
+          new HttpEntity<>(headers),
+          SampleTemporalEntity.class);
+    }
+
+    @Test
+    public void conditionalGet() {
+        final LocalDate today = LocalDate.now();
+        SampleTemporalEntity sample = new SampleTemporalEntity();
+        sample.setProperty("old");
+        sample.setEffectiveOn(today.minusDays(10));
+        restTemplate.postForObject(
+          String.format("http://localhost:%d/sample/conditional", port),
+          sample,
+          SampleTemporalEntity.class);
+
+        final String past = "?at=" + today.minusDays(5);
+        final ResponseEntity<SampleTemporalEntity> historical = getConditional(past, null);
+        assertThat(historical.getStatusCodeValue(), is(200));
+        final String etag = historical.getHeaders().getETag();
+        assertThat(etag, is("\"" + historical.getBody().getId() + "\""));
+        assertThat(historical.getHeaders().getCacheControl(), is("max-age=86400"));
+
+        final ResponseEntity<SampleTemporalEntity> notModified = getConditional(past, etag);
+        assertThat(notModified.getStatusCodeValue(), is(304));
+        assertThat(notModified.getHeaders().getETag(), is(etag));
+        assertThat(notModified.getHeaders().getCacheControl(), is("max-age=86400"));
+
+        final ResponseEntity<SampleTemporalEntity> current = getConditional("", etag);
+        assertThat(current.getStatusCodeValue(), is(304));
+        assertThat(current.getHeaders().getCacheControl(), is("max-age=5"));
+
+        // a later version changes the effective until of the version so it is no longer the same representation
+        sample = new SampleTemporalEntity();
+        sample.setProperty("new");
+        sample.setEffectiveOn(today.minusDays(1));
+        restTemplate.postForObject(
+          String.format("http://localhost:%d/sample/conditional", port),
+          sample,
+          SampleTemporalEntity.class);
+        final ResponseEntity<SampleTemporalEntity> modified = getConditional(past, etag);
+        assertThat(modified.getStatusCodeValue(), is(200));
+        assertThat(modified.getBody().getProperty(), is("old"));
+        assertThat(modified.getBody().getEffectiveUntil(), is(today.minusDays(1)));
+        assertThat(getConditional(past, modified.getHeaders().getETag()).getStatusCodeValue(), is(304));
+        assertThat(getConditional("", modified.getHeaders().getETag()).getStatusCodeValue(), is(200));
+    }
+
+    @Test
+    public void fields() {
+        SampleTemporalEntity sample = new SampleTemporalEntity();
+        sample.setProperty("thin");
+        sample.setAdditionalAttribute("color", "red");
+        sample.setAdditionalAttribute("size", "large");
+        sample.setEffectiveOn(LocalDate.now().minusDays(1));
+        final SampleTemporalEntity saved = restTemplate.postForObject(
+          String.format("http://localhost:%d/sample/fields", port),
+          sample,
+          SampleTemporalEntity.class);
+
+        final ResponseEntity<Map<String, Object>> result = restTemplate.exchange(
+          String.format("http://localhost:%d/sample/fields?fields=property,color", port),
+          HttpMethod.GET,
+          null,
+          new ParameterizedTypeReference<Map<String, Object>>() {
+
+          });
+        assertThat(result.getStatusCodeValue(), is(200));
+        assertThat(result.getBody().size(), is(2));
+        assertThat(result.getBody().get("property"), is("thin"));
+        assertThat(result.getBody().get("color"), is("red"));
+        assertThat(result.getHeaders().getETag(), is("\"" + saved.getId() + "\""));
+
+        assertThat(restTemplate.getForEntity(
+          String.format("http://localhost:%d/sample/not-found?fields=property", port),
+          String.class).getStatusCodeValue(), is(404));
+    }
+
+    @Test
+    public void metrics() {
+        restTemplate.getForEntity(
+          String.format("http://localhost:%d/sample/metrics", port),
+          SampleTemporalEntity.class);
+        final ResponseEntity<String> result = restTemplate.getForEntity(
+          String.format("http://localhost:%d/actuator/metrics/temporal.find?tag=entity:SampleTemporalEntity", port),
+          String.class);
+        assertThat(result.getStatusCodeValue(), is(200));
+    }
+
 }
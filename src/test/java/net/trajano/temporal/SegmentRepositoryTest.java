@@ -0,0 +1,300 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.anemic.InMemoryAnemicTemporalRepository;
+import net.trajano.temporal.sample.InMemorySampleTemporalEntityRepository;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({
+  "test",
+  "segment"
+})
+@SpringBootTest(
+  webEnvironment = SpringBootTest.WebEnvironment.NONE,
+  classes = TemporalDataPatternApplication.class,
+  properties = {
+    "temporal.segment.directory=target/segment-test"
+  }
+)
+public class SegmentRepositoryTest {
+
+    private static final Instant D1 = Instant.parse("2019-01-01T00:00:00Z");
+
+    private static final Instant D2 = Instant.parse("2019-02-01T00:00:00Z");
+
+    private static final Path DIRECTORY = Paths.get("target/segment-test");
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    @Autowired
+    private SampleTemporalEntityRepository sampleRepo;
+
+    @BeforeClass
+    public static void deleteSegments() throws IOException {
+        FileSystemUtils.deleteRecursively(DIRECTORY);
+    }
+
+    private AnemicTemporal save(
+      final String key,
+      final Instant effectiveOn,
+      final String value) {
+
+        final AnemicTemporal o = new AnemicTemporal();
+        o.setAdditionalAttribute("value", value);
+        return repo.saveTemporal(o, key, effectiveOn);
+    }
+
+    /**
+     * @return a repository that replays the segments of {@link #repo} as if the application was restarted
+     */
+    private InMemoryAnemicTemporalRepository restart() {
+
+        return beanFactory.createBean(InMemoryAnemicTemporalRepository.class);
+    }
+
+    private String values(final Stream<AnemicTemporal> history) {
+
+        return history.map(o -> o.getAdditionalAttribute("value"))
+          .collect(Collectors.joining(","));
+    }
+
+    @Test
+    public void replay() {
+        save("seg-replay", D1, "1");
+        final AnemicTemporal v2 = save("seg-replay", D2, "2");
+        final AnemicTemporal v1a = save("seg-replay", D1, "1a");
+
+        final SampleTemporalEntity sample = new SampleTemporalEntity();
+        sample.setProperty("p");
+        sample.setAdditionalAttribute("a", "1");
+        sampleRepo.saveTemporal(sample, "seg-replay", LocalDate.now().minusDays(1));
+
+        final InMemoryAnemicTemporalRepository restarted = restart();
+        final InMemorySampleTemporalEntityRepository restartedSample = beanFactory.createBean(InMemorySampleTemporalEntityRepository.class);
+        try {
+            final AnemicTemporal found = restarted.findByKeyAt("seg-replay", D1).get();
+            assertEquals(v1a.getId(), found.getId());
+            assertEquals(D2, found.getEffectiveUntil());
+            assertEquals(v1a.getRecordedAt(), found.getRecordedAt());
+            assertEquals(v2.getId(), restarted.findByKey("seg-replay").get().getId());
+            assertEquals("1,1a,2", values(restarted.findHistory("seg-replay", null, null, true)));
+
+            final SampleTemporalEntity foundSample = restartedSample.findByKey("seg-replay").get();
+            assertEquals(sample.getId(), foundSample.getId());
+            assertEquals("p", foundSample.getProperty());
+            assertEquals("1", foundSample.getAdditionalAttribute("a"));
+        } finally {
+            beanFactory.destroyBean(restarted);
+            beanFactory.destroyBean(restartedSample);
+        }
+    }
+
+    @Test
+    public void transaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            save("seg-rolled-back", D1, "rolled back");
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            save("seg-committed", D1, "committed");
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        final InMemoryAnemicTemporalRepository restarted = restart();
+        try {
+            assertFalse(restarted.findByKeyAt("seg-rolled-back", D1).isPresent());
+            assertEquals("committed", restarted.findByKeyAt("seg-committed", D1).get().getAdditionalAttribute("value"));
+        } finally {
+            beanFactory.destroyBean(restarted);
+        }
+    }
+
+    @Test
+    public void rolledBackAfterAppend() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            save("seg-rolled-back-late", D1, "rolled back");
+            // the records are appended, then the commit fails
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertFalse(repo.findByKeyAt("seg-rolled-back-late", D1).isPresent());
+
+        final InMemoryAnemicTemporalRepository restarted = restart();
+        try {
+            assertFalse(restarted.findByKeyAt("seg-rolled-back-late", D1).isPresent());
+        } finally {
+            beanFactory.destroyBean(restarted);
+        }
+    }
+
+    @Test
+    public void compactionStoppedBeforeDelete() throws IOException {
+        save("seg-compact-crash", D1, "1");
+        // the correction is in a later segment than the version it supersedes
+        repo.archiveSuperseded();
+        save("seg-compact-crash", D1, "1a");
+        final Map<Path, byte[]> before = new HashMap<>();
+        try (Stream<Path> segments = Files.list(DIRECTORY.resolve("AnemicTemporal"))) {
+            for (final Path segment : segments.collect(Collectors.toList())) {
+                before.put(segment, Files.readAllBytes(segment));
+            }
+        }
+        repo.archiveSuperseded();
+        // the process stopped after the compacted segment was renamed but before the old segments were deleted
+        for (final Map.Entry<Path, byte[]> segment : before.entrySet()) {
+            if (!Files.exists(segment.getKey())) {
+                Files.write(segment.getKey(), segment.getValue());
+            }
+        }
+
+        final InMemoryAnemicTemporalRepository restarted = restart();
+        try {
+            // the superseded version is not replayed from the segments that were replaced
+            assertEquals("1a", values(restarted.findHistory("seg-compact-crash", null, null, true)));
+            assertEquals("1a", restarted.findByKeyAt("seg-compact-crash", D1).get().getAdditionalAttribute("value"));
+        } finally {
+            beanFactory.destroyBean(restarted);
+        }
+    }
+
+    @Test
+    public void compactionInTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            save("seg-compact-tx", D1, "1");
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            // the records of the transaction are compacted before its commit record is appended
+            repo.archiveSuperseded();
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        final InMemoryAnemicTemporalRepository restarted = restart();
+        try {
+            assertEquals("1", restarted.findByKeyAt("seg-compact-tx", D1).get().getAdditionalAttribute("value"));
+        } finally {
+            beanFactory.destroyBean(restarted);
+        }
+    }
+
+    @Test
+    public void delete() {
+        final SampleTemporalEntity deleted = new SampleTemporalEntity();
+        sampleRepo.saveTemporal(deleted, "seg-delete", LocalDate.now().minusDays(1));
+        final SampleTemporalEntity kept = new SampleTemporalEntity();
+        sampleRepo.saveTemporal(kept, "seg-delete-kept", LocalDate.now().minusDays(1));
+        sampleRepo.deleteById(deleted.getId());
+
+        InMemorySampleTemporalEntityRepository restarted = beanFactory.createBean(InMemorySampleTemporalEntityRepository.class);
+        try {
+            assertFalse(restarted.findById(deleted.getId()).isPresent());
+            assertEquals(kept.getId(), restarted.findByKey("seg-delete-kept").get().getId());
+        } finally {
+            beanFactory.destroyBean(restarted);
+        }
+        // the compacted segment has neither the version nor the delete
+        sampleRepo.archiveSuperseded(SampleTemporalEntity.class);
+        restarted = beanFactory.createBean(InMemorySampleTemporalEntityRepository.class);
+        try {
+            assertFalse(restarted.findById(deleted.getId()).isPresent());
+            assertEquals(kept.getId(), restarted.findByKey("seg-delete-kept").get().getId());
+        } finally {
+            beanFactory.destroyBean(restarted);
+        }
+    }
+
+    @Test
+    public void incompleteRecord() throws IOException {
+        save("seg-incomplete", D1, "1");
+        final Path segment;
+        try (Stream<Path> segments = Files.list(DIRECTORY.resolve("AnemicTemporal"))) {
+            segment = segments.max(Path::compareTo).get();
+        }
+        final long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {
+              0,
+              0,
+              0,
+              100,
+              1,
+              2
+            }));
+        }
+
+        final InMemoryAnemicTemporalRepository restarted = restart();
+        try {
+            assertEquals("1", restarted.findByKeyAt("seg-incomplete", D1).get().getAdditionalAttribute("value"));
+            assertEquals(size, Files.size(segment));
+        } finally {
+            beanFactory.destroyBean(restarted);
+        }
+    }
+
+    @Test
+    public void compaction() {
+        save("seg-compact", D1, "1");
+        save("seg-compact", D1, "1a");
+        save("seg-compact", D2, "2");
+        assertTrue(repo.archiveSuperseded() >= 1);
+        assertEquals("1a,2", values(repo.findHistory("seg-compact", null, null, true)));
+        save("seg-compact", D2, "2a");
+
+        final InMemoryAnemicTemporalRepository restarted = restart();
+        try {
+            assertEquals("1a,2,2a", values(restarted.findHistory("seg-compact", null, null, true)));
+            assertEquals("2a", restarted.findByKeyAt("seg-compact", D2).get().getAdditionalAttribute("value"));
+        } finally {
+            beanFactory.destroyBean(restarted);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.domain.TemporalProjection;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false,
+  properties = {
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+  }
+)
+public class StatementCountTest {
+
+    @Autowired
+    private AnemicTemporalRepository anemicRepo;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory emf;
+
+    @Autowired
+    private SampleTemporalEntityRepository sampleRepo;
+
+    private Statistics statistics;
+
+    @Before
+    public void statistics() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private void startCounting() {
+        em.flush();
+        em.clear();
+        statistics.clear();
+    }
+
+    @Test
+    public void elementCollectionLookup() {
+        for (final String key : Arrays.asList("countA", "countB")) {
+            SampleTemporalEntity o = new SampleTemporalEntity();
+            o.setAdditionalAttribute("a", "1");
+            o.setAdditionalAttribute("b", "2");
+            sampleRepo.saveTemporal(o, key, LocalDate.now().minusDays(1));
+        }
+
+        startCounting();
+        final SampleTemporalEntity found = sampleRepo.findByKey("countA").get();
+        assertEquals("2", found.getAdditionalAttribute("b"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        startCounting();
+        final Map<String, SampleTemporalEntity> foundKeys = sampleRepo.findByKeys(Arrays.asList("countA", "countB"));
+        assertEquals(2, foundKeys.size());
+        assertEquals(2, foundKeys.get("countB").getAdditionalAttributes().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void fieldsLookup() {
+        SampleTemporalEntity sample = new SampleTemporalEntity();
+        sample.setProperty("p");
+        sample.setAdditionalAttribute("a", "1");
+        sample.setAdditionalAttribute("b", "2");
+        sampleRepo.saveTemporal(sample, "countFields", LocalDate.now().minusDays(1));
+        AnemicTemporal anemic = new AnemicTemporal();
+        anemic.setAdditionalAttribute("a", "1");
+        anemic.setAdditionalAttribute("b", "2");
+        anemicRepo.saveTemporal(anemic, "countFields", Instant.now().minusSeconds(60));
+
+        startCounting();
+        final TemporalProjection sampleFields = sampleRepo.findFieldsByKeyAt("countFields", LocalDate.now(), Arrays.asList("property", "b", "missing")).get();
+        assertEquals(sample.getId(), sampleFields.getId());
+        assertEquals(2, sampleFields.getFields().size());
+        assertEquals("p", sampleFields.getFields().get("property"));
+        assertEquals("2", sampleFields.getFields().get("b"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        startCounting();
+        final TemporalProjection anemicFields = anemicRepo.findFieldsByKeyAt("countFields", Instant.now(), Arrays.asList("key", "a")).get();
+        assertEquals("countFields", anemicFields.getFields().get("key"));
+        assertEquals("1", anemicFields.getFields().get("a"));
+        assertEquals(2, anemicFields.getFields().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        assertFalse(sampleRepo.findFieldsByKeyAt("countFields", LocalDate.now().minusDays(2), Arrays.asList("property")).isPresent());
+    }
+
+    @Test
+    public void jsonLookup() {
+        for (final String key : Arrays.asList("countA", "countB")) {
+            AnemicTemporal o = new AnemicTemporal();
+            o.setAdditionalAttribute("a", "1");
+            o.setAdditionalAttribute("b", "2");
+            anemicRepo.saveTemporal(o, key, Instant.now().minusSeconds(60));
+        }
+
+        startCounting();
+        final AnemicTemporal found = anemicRepo.findByKey("countA").get();
+        assertEquals("1", found.getAdditionalAttribute("a"));
+        assertEquals("2", found.getAdditionalAttribute("b"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        startCounting();
+        final Map<String, AnemicTemporal> foundKeys = anemicRepo.findByKeys(Arrays.asList("countA", "countB"));
+        assertEquals(2, foundKeys.size());
+        assertEquals("2", foundKeys.get("countB").getAdditionalAttribute("b"));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void emptyJsonAttributes() {
+        anemicRepo.saveTemporal(new AnemicTemporal(), "countEmpty", Instant.now().minusSeconds(60));
+        startCounting();
+        assertEquals(0, anemicRepo.findByKey("countEmpty").get().getAdditionalAttributes().size());
+    }
+
+    @Test
+    public void supersedeIsOneUpdateAndOneInsert() {
+        final Instant effectiveOn = Instant.now().minusSeconds(60);
+        final AnemicTemporal original = new AnemicTemporal();
+        original.setAdditionalAttribute("a", "1");
+        anemicRepo.saveTemporal(original, "countSupersede", effectiveOn);
+
+        startCounting();
+        final AnemicTemporal replacement = new AnemicTemporal();
+        replacement.setAdditionalAttribute("a", "2");
+        anemicRepo.saveTemporal(replacement, "countSupersede", effectiveOn);
+        em.flush();
+        // one select for the current version, one update and one insert
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityInsertCount());
+
+        startCounting();
+        final AnemicTemporal later = new AnemicTemporal();
+        later.setAdditionalAttribute("a", "3");
+        anemicRepo.saveTemporal(later, "countSupersede", effectiveOn.plusSeconds(30));
+        em.flush();
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        em.clear();
+        assertEquals(replacement.getId(), em.find(AnemicTemporal.class, original.getId()).getSupersededBy());
+        assertEquals(effectiveOn.plusSeconds(30), em.find(AnemicTemporal.class, replacement.getId()).getEffectiveUntil());
+        assertEquals("3", anemicRepo.findByKey("countSupersede").get().getAdditionalAttribute("a"));
+    }
+
+}
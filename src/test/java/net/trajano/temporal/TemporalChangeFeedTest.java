@@ -0,0 +1,198 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.domain.TemporalChange;
+import net.trajano.temporal.domain.TemporalChangeFeed;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false,
+  properties = {
+    "temporal.changes.subscriber-buffer-size=2",
+    "temporal.changes.history-size=3"
+  }
+)
+@Import(TemporalChangeFeed.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TemporalChangeFeedTest {
+
+    private static final Instant D1 = Instant.parse("2019-01-01T00:00:00Z");
+
+    @Autowired
+    private TemporalChangeFeed feed;
+
+    @Autowired
+    private AnemicTemporalRepository repo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SampleTemporalEntityRepository sampleRepo;
+
+    private AnemicTemporal save(
+      final String key,
+      final Instant effectiveOn) {
+
+        return repo.saveTemporal(new AnemicTemporal(), key, effectiveOn);
+    }
+
+    @Test
+    public void resume() {
+        final long after = feed.getSequence();
+        final AnemicTemporal first = save("feedResume", D1);
+        final AnemicTemporal replacement = save("feedResume", D1);
+        final AnemicTemporal next = save("feedResume", D1.plusSeconds(60));
+
+        final List<TemporalChange> changes = feed.changes(AnemicTemporal.class, after)
+          .take(3)
+          .collectList()
+          .block(Duration.ofSeconds(10));
+        assertEquals(first.getId(), changes.get(0).getId());
+        assertNull(changes.get(0).getSupersededId());
+        assertEquals(replacement.getId(), changes.get(1).getId());
+        assertEquals(first.getId(), changes.get(1).getSupersededId());
+        assertEquals(next.getId(), changes.get(2).getId());
+        assertNull(changes.get(2).getSupersededId());
+        assertEquals("feedResume", changes.get(2).getKey());
+        assertEquals(D1.plusSeconds(60), changes.get(2).getEffectiveOn());
+
+        final TemporalChange resumed = feed.changes(AnemicTemporal.class, changes.get(1).getSequence())
+          .blockFirst(Duration.ofSeconds(10));
+        assertEquals(next.getId(), resumed.getId());
+    }
+
+    @Test
+    public void bulkChain() {
+        final long after = feed.getSequence();
+        final AnemicTemporal existing = save("feedBulk", D1);
+        final AnemicTemporal a = new AnemicTemporal();
+        a.setKey("feedBulk");
+        a.setEffectiveOn(D1);
+        final AnemicTemporal b = new AnemicTemporal();
+        b.setKey("feedBulk");
+        b.setEffectiveOn(D1);
+        repo.saveAllTemporal(Arrays.asList(a, b));
+
+        final List<TemporalChange> changes = feed.changes(AnemicTemporal.class, after)
+          .take(3)
+          .collectList()
+          .block(Duration.ofSeconds(10));
+        assertEquals(existing.getId(), changes.get(1).getSupersededId());
+        assertEquals(a.getId(), changes.get(1).getId());
+        assertEquals(a.getId(), changes.get(2).getSupersededId());
+        assertEquals(b.getId(), changes.get(2).getId());
+    }
+
+    @Test
+    public void resetWhenNotFromThisProcess() {
+        // the sequence starts from the time the process started
+        assertTrue(feed.getSequence() > Instant.parse("2019-01-01T00:00:00Z").toEpochMilli() << 20);
+
+        final TemporalChange ahead = feed.changes(AnemicTemporal.class, feed.getSequence() + 1)
+          .blockFirst(Duration.ofSeconds(10));
+        assertTrue(ahead.isReset());
+        assertEquals(feed.getSequence(), ahead.getSequence());
+        assertEquals("AnemicTemporal", ahead.getEntity());
+
+        final long current = feed.getSequence();
+        final List<TemporalChange> restarted = feed.changes(AnemicTemporal.class, 5L)
+          .take(2)
+          .collectList()
+          .doOnSubscribe(s -> save("feedRestarted", D1))
+          .block(Duration.ofSeconds(10));
+        assertTrue(restarted.get(0).isReset());
+        assertEquals(current, restarted.get(0).getSequence());
+        assertEquals("feedRestarted", restarted.get(1).getKey());
+    }
+
+    @Test
+    public void resetWhenNoLongerBuffered() {
+        final long after = feed.getSequence();
+        for (int i = 0; i < 4; ++i) {
+            save("feedEvicted", D1.plusSeconds(i));
+        }
+        final TemporalChange reset = feed.changes(AnemicTemporal.class, after)
+          .blockFirst(Duration.ofSeconds(10));
+        assertTrue(reset.isReset());
+        assertEquals(feed.getSequence(), reset.getSequence());
+    }
+
+    @Test
+    public void bufferedPerEntity() {
+        final long after = feed.getSequence();
+        final AnemicTemporal saved = save("feedPerEntity", D1);
+        for (int i = 0; i < 4; ++i) {
+            sampleRepo.saveTemporal(new SampleTemporalEntity(), "feedPerEntity", LocalDate.now().minusDays(i));
+        }
+        final TemporalChange resumed = feed.changes(AnemicTemporal.class, after)
+          .blockFirst(Duration.ofSeconds(10));
+        assertFalse(resumed.isReset());
+        assertEquals(saved.getId(), resumed.getId());
+    }
+
+    @Test
+    public void notPublishedOnRollback() {
+        final long sequence = feed.getSequence();
+        new TransactionTemplate(transactionManager).execute(status -> {
+            save("feedRollback", D1);
+            status.setRollbackOnly();
+            return null;
+        });
+        assertEquals(sequence, feed.getSequence());
+    }
+
+    @Test
+    public void slowSubscriberDropsOldest() {
+        final List<TemporalChange> received = new CopyOnWriteArrayList<>();
+        final BaseSubscriber<TemporalChange> subscriber = new BaseSubscriber<TemporalChange>() {
+
+            @Override
+            protected void hookOnSubscribe(final Subscription subscription) {
+                // nothing is requested until all the changes are published
+            }
+
+            @Override
+            protected void hookOnNext(final TemporalChange change) {
+                received.add(change);
+            }
+        };
+        feed.changes(AnemicTemporal.class, null).subscribe(subscriber);
+        for (int i = 0; i < 5; ++i) {
+            save("feedSlow", D1.plusSeconds(i));
+        }
+        subscriber.request(10);
+        subscriber.dispose();
+
+        assertEquals(2, received.size());
+        assertEquals(feed.getSequence() - 1, received.get(0).getSequence());
+        assertEquals(feed.getSequence(), received.get(1).getSequence());
+    }
+
+}
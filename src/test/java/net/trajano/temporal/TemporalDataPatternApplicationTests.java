@@ -12,6 +12,9 @@ import org.springframework.test.context.junit4.SpringRunner;
 import javax.persistence.EntityManager;
 import javax.validation.ConstraintViolationException;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.Assert.*;
@@ -122,4 +125,70 @@ public class TemporalDataPatternApplicationTests {
 
     }
 
+    @Test
+    public void findByKeys() {
+        SampleTemporalEntity a1 = new SampleTemporalEntity();
+        a1.setProperty("a1");
+        repo.saveTemporal(a1, "keyA", LocalDate.now().minusDays(10));
+        SampleTemporalEntity a2 = new SampleTemporalEntity();
+        a2.setProperty("a2");
+        repo.saveTemporal(a2, "keyA", LocalDate.now().minusDays(5));
+        SampleTemporalEntity b1 = new SampleTemporalEntity();
+        b1.setProperty("b1");
+        repo.saveTemporal(b1, "keyB", LocalDate.now().minusDays(7));
+
+        em.flush();
+
+        final Map<String, SampleTemporalEntity> now = repo.findByKeys(Arrays.asList("keyB", "keyA", "keyC", "keyA"));
+        assertEquals(Arrays.asList("keyB", "keyA"), Arrays.asList(now.keySet().toArray()));
+        assertEquals("a2", now.get("keyA").getProperty());
+        assertEquals("b1", now.get("keyB").getProperty());
+
+        final Map<String, SampleTemporalEntity> earlier = repo.findByKeysAt(Arrays.asList("keyA", "keyB"), LocalDate.now().minusDays(8));
+        assertEquals(1, earlier.size());
+        assertEquals("a1", earlier.get("keyA").getProperty());
+    }
+
+    @Test
+    public void saveAll() {
+        SampleTemporalEntity existing = new SampleTemporalEntity();
+        existing.setProperty("existing");
+        repo.saveTemporal(existing, "bulkA", LocalDate.now().minusDays(1));
+        em.flush();
+
+        SampleTemporalEntity a1 = new SampleTemporalEntity();
+        a1.setKey("bulkA");
+        a1.setEffectiveOn(LocalDate.now().minusDays(1));
+        a1.setProperty("a1");
+        SampleTemporalEntity b1 = new SampleTemporalEntity();
+        b1.setKey("bulkB");
+        b1.setEffectiveOn(LocalDate.now().minusDays(1));
+        b1.setProperty("b1");
+        SampleTemporalEntity a2 = new SampleTemporalEntity();
+        a2.setKey("bulkA");
+        a2.setEffectiveOn(LocalDate.now().minusDays(1));
+        a2.setProperty("a2");
+
+        final List<SampleTemporalEntity> saved = repo.saveAllTemporal(Arrays.asList(a1, b1, a2));
+        assertEquals(Arrays.asList(a1, b1, a2), saved);
+        assertEquals(a2.getId(), a1.getSupersededBy());
+        em.flush();
+        em.clear();
+
+        assertEquals("a2", repo.findByKey("bulkA").get().getProperty());
+        assertEquals("b1", repo.findByKey("bulkB").get().getProperty());
+        assertEquals(a1.getId(), repo.findById(existing.getId()).get().getSupersededBy());
+        assertEquals(a2.getId(), repo.findById(a1.getId()).get().getSupersededBy());
+    }
+
+    @Test
+    public void timeOrderedIds() {
+        SampleTemporalEntity first = new SampleTemporalEntity();
+        repo.saveTemporal(first, "timeOrderedIds", LocalDate.now());
+        SampleTemporalEntity second = new SampleTemporalEntity();
+        repo.saveTemporal(second, "timeOrderedIds", LocalDate.now());
+        assertEquals(7, first.getId().version());
+        assertTrue(first.getId().compareTo(second.getId()) < 0);
+    }
+
 }
@@ -0,0 +1,97 @@
+package net.trajano.temporal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.trajano.temporal.anemic.AnemicTemporal;
+import net.trajano.temporal.anemic.AnemicTemporalRepository;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false,
+  properties = {
+    "temporal.metrics.disabled-entities=AnemicTemporal"
+  }
+)
+public class TemporalMetricsTest {
+
+    @Autowired
+    private AnemicTemporalRepository anemicRepo;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Autowired
+    private SampleTemporalEntityRepository sampleRepo;
+
+    private double count(
+      final String name,
+      final String... tags) {
+
+        final Counter counter = registry.find(name).tags(tags).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private long timerCount(final String name) {
+        final Timer timer = registry.find(name).tag("entity", "SampleTemporalEntity").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    @Test
+    public void recorded() {
+        final double hits = count("temporal.find.results", "entity", "SampleTemporalEntity", "result", "hit");
+        final double misses = count("temporal.find.results", "entity", "SampleTemporalEntity", "result", "miss");
+        final double supersedes = count("temporal.save.supersedes", "entity", "SampleTemporalEntity");
+        final long saves = timerCount("temporal.save");
+
+        sampleRepo.saveTemporal(new SampleTemporalEntity(), "metrics", LocalDate.now());
+        sampleRepo.saveTemporal(new SampleTemporalEntity(), "metrics", LocalDate.now());
+        sampleRepo.findByKey("metrics");
+        sampleRepo.findByKey("metricsNotFound");
+        sampleRepo.findByKeys(Arrays.asList("metrics", "metricsNotFound"));
+
+        assertEquals(hits + 2, count("temporal.find.results", "entity", "SampleTemporalEntity", "result", "hit"), 0);
+        assertEquals(misses + 2, count("temporal.find.results", "entity", "SampleTemporalEntity", "result", "miss"), 0);
+        assertEquals(supersedes + 1, count("temporal.save.supersedes", "entity", "SampleTemporalEntity"), 0);
+        assertEquals(saves + 2, timerCount("temporal.save"));
+        assertTrue(timerCount("temporal.save.lookup") >= 2);
+        assertTrue(timerCount("temporal.find.keys") >= 1);
+    }
+
+    @Test
+    public void disabledForEntity() {
+        anemicRepo.saveTemporal(new AnemicTemporal(), "metrics", Instant.now());
+        anemicRepo.findByKey("metrics");
+        assertNull(registry.find("temporal.find").tag("entity", "AnemicTemporal").timer());
+        assertNull(registry.find("temporal.save").tag("entity", "AnemicTemporal").timer());
+    }
+
+    @TestConfiguration
+    static class MetricsConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.domain.TimeOrderedUuid;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class TimeOrderedUuidTest {
+
+    private static final UUID NOT_SUPERSEDED = UUID.fromString("00000000-0000-0000-0000-000000000000");
+
+    private static final UUID SUPERSEDED_TEMPORARILY = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    @Test
+    public void versionAndTimestamp() {
+        final long before = System.currentTimeMillis();
+        final UUID uuid = TimeOrderedUuid.next();
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertTrue(TimeOrderedUuid.getTimestamp(uuid) >= before);
+        assertTrue(TimeOrderedUuid.getTimestamp(uuid) <= System.currentTimeMillis() + 1000);
+    }
+
+    @Test
+    public void sentinelsSortFirst() {
+        final UUID uuid = TimeOrderedUuid.next();
+        assertTrue(NOT_SUPERSEDED.compareTo(uuid) < 0);
+        assertTrue(SUPERSEDED_TEMPORARILY.compareTo(uuid) < 0);
+    }
+
+    @Test
+    public void monotonic() {
+        UUID previous = TimeOrderedUuid.next();
+        for (int i = 0; i < 100000; ++i) {
+            final UUID next = TimeOrderedUuid.next();
+            assertTrue(previous.compareTo(next) < 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final Set<UUID> all = ConcurrentHashMap.newKeySet();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                futures.add(executor.submit(() -> {
+                    UUID previous = TimeOrderedUuid.next();
+                    all.add(previous);
+                    for (int i = 0; i < 50000; ++i) {
+                        final UUID next = TimeOrderedUuid.next();
+                        if (previous.compareTo(next) >= 0 || !all.add(next)) {
+                            return false;
+                        }
+                        previous = next;
+                    }
+                    return true;
+                }));
+            }
+            for (final Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8 * 50001, all.size());
+    }
+
+}
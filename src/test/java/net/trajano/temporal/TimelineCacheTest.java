@@ -0,0 +1,150 @@
+package net.trajano.temporal;
+
+import net.trajano.temporal.domain.TimelineCache;
+import net.trajano.temporal.sample.SampleTemporalEntity;
+import net.trajano.temporal.sample.SampleTemporalEntityRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@ActiveProfiles({"test"})
+@DataJpaTest(
+  showSql = false,
+  properties = {
+    "temporal.cache.enabled=true",
+    "temporal.cache.maximum-keys=2"
+  }
+)
+@Import(TimelineCache.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TimelineCacheTest {
+
+    @Autowired
+    private TimelineCache cache;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private SampleTemporalEntityRepository repo;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void floorLookupFromCache() {
+        SampleTemporalEntity first = new SampleTemporalEntity();
+        first.setProperty("first");
+        repo.saveTemporal(first, "cached", LocalDate.now().minusDays(10));
+        SampleTemporalEntity second = new SampleTemporalEntity();
+        second.setProperty("second");
+        repo.saveTemporal(second, "cached", LocalDate.now().minusDays(5));
+
+        final long misses = cache.getMissCount();
+        final long hits = cache.getHitCount();
+        assertEquals("second", repo.findByKey("cached").get().getProperty());
+        assertEquals("first", repo.findByKeyAt("cached", LocalDate.now().minusDays(6)).get().getProperty());
+        assertFalse(repo.findByKeyAt("cached", LocalDate.now().minusDays(11)).isPresent());
+        assertEquals(misses + 1, cache.getMissCount());
+        assertEquals(hits + 2, cache.getHitCount());
+    }
+
+    @Test
+    public void invalidatedOnSave() {
+        SampleTemporalEntity first = new SampleTemporalEntity();
+        first.setProperty("first");
+        repo.saveTemporal(first, "invalidated", LocalDate.now().minusDays(10));
+        assertEquals("first", repo.findByKey("invalidated").get().getProperty());
+
+        SampleTemporalEntity second = new SampleTemporalEntity();
+        second.setProperty("second");
+        repo.saveTemporal(second, "invalidated", LocalDate.now().minusDays(10));
+        assertEquals("second", repo.findByKey("invalidated").get().getProperty());
+    }
+
+    @Test
+    public void returnsCopies() {
+        SampleTemporalEntity saved = new SampleTemporalEntity();
+        saved.setProperty("saved");
+        saved.setAdditionalAttribute("a", "saved");
+        repo.saveTemporal(saved, "copied", LocalDate.now().minusDays(10));
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            final SampleTemporalEntity found = repo.findByKey("copied").get();
+            assertEquals(saved.getId(), found.getId());
+            assertFalse(em.contains(found));
+            found.setProperty("modified");
+            found.setAdditionalAttribute("a", "modified");
+            return null;
+        });
+
+        final SampleTemporalEntity foundAgain = repo.findByKey("copied").get();
+        assertEquals("saved", foundAgain.getProperty());
+        assertEquals("saved", foundAgain.getAdditionalAttribute("a"));
+        assertNotSame(foundAgain, repo.findByKey("copied").get());
+    }
+
+    @Test
+    public void uncommittedNotShared() {
+        // other transactions read what is committed rather than waiting for the locks of the one that saves
+        new JdbcTemplate(dataSource).execute("set database transaction control mvcc");
+        SampleTemporalEntity first = new SampleTemporalEntity();
+        first.setProperty("first");
+        repo.saveTemporal(first, "uncommitted", LocalDate.now().minusDays(10));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            new TransactionTemplate(transactionManager).execute(status -> {
+                SampleTemporalEntity second = new SampleTemporalEntity();
+                second.setProperty("second");
+                repo.saveTemporal(second, "uncommitted", LocalDate.now().minusDays(5));
+                assertEquals("second", repo.findByKey("uncommitted").get().getProperty());
+                try {
+                    assertEquals("first", executor.submit(() -> repo.findByKey("uncommitted").get().getProperty()).get());
+                } catch (final Exception e) {
+                    throw new AssertionError(e);
+                }
+                // the timeline loaded by the other thread is not used by the transaction that saved the key
+                assertEquals("second", repo.findByKey("uncommitted").get().getProperty());
+                status.setRollbackOnly();
+                return null;
+            });
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("first", repo.findByKey("uncommitted").get().getProperty());
+    }
+
+    @Test
+    public void evicted() {
+        cache.clear();
+        final long evictions = cache.getEvictionCount();
+        repo.findByKey("evictedA");
+        repo.findByKey("evictedB");
+        repo.findByKey("evictedC");
+        assertEquals(2, cache.getSize());
+        assertEquals(evictions + 1, cache.getEvictionCount());
+    }
+
+}